@@ -0,0 +1,130 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Builds the cells of a {@link CalendarModel}'s months for a selected range of days: which days
+ * are selectable, selected, today, and where each sits in the range.  This is the month and
+ * selection engine behind the pickers.  It has no Android dependencies, so the same grids can be
+ * built, tested and rendered on a plain JVM.
+ * <p>
+ * Subclasses may override {@link #createDescriptor} to build their own descriptors.
+ */
+public class CalendarCells {
+  /** Stands for no day, e.g. the end of a range that has only been started. */
+  public static final int NO_DAY = Integer.MIN_VALUE;
+
+  private final CalendarModel model;
+  private final int todayDay;
+
+  /** Cells for {@code model}'s months, highlighting {@code today}. */
+  public CalendarCells(CalendarModel model, Date today) {
+    this(model, EpochDays.of(today, model.getTimeZone()));
+  }
+
+  CalendarCells(CalendarModel model, int todayDay) {
+    if (model == null) {
+      throw new IllegalArgumentException("Model must be non-null");
+    }
+    this.model = model;
+    this.todayDay = todayDay;
+  }
+
+  public CalendarModel getModel() {
+    return model;
+  }
+
+  /**
+   * Builds the weeks of the model's month at {@code index}.  Time of day is ignored.
+   *
+   * @param selectedStartDate Earliest selected date, inclusive, or null for no selection.
+   * @param selectedEndDate Latest selected date, inclusive, or null to select only the start date.
+   */
+  public List<List<MonthCellDescriptor>> build(int index, Date selectedStartDate,
+      Date selectedEndDate) {
+    return build(model.getGrid(index), toDay(selectedStartDate), toDay(selectedEndDate));
+  }
+
+  /**
+   * Builds the weeks of {@code grid}.
+   *
+   * @param selectedStartDay Epoch day of the earliest selected date, inclusive, or {@link #NO_DAY}.
+   * @param selectedEndDay Epoch day of the latest selected date, inclusive, or {@link #NO_DAY}.
+   */
+  List<List<MonthCellDescriptor>> build(MonthGrid grid, int selectedStartDay,
+      int selectedEndDay) {
+    final int minDay = model.getMinDay();
+    final int maxDay = model.getMaxDay();
+    final TimeZone timeZone = model.getTimeZone();
+    final List<List<MonthCellDescriptor>> cells = new ArrayList<List<MonthCellDescriptor>>();
+    // Consecutive cells are consecutive days, so the grid is plain arithmetic from here on.
+    int day = grid.getFirstCellDay();
+    for (int w = 0, numWeeks = grid.getWeekCount(); w < numWeeks; w++) {
+      final List<MonthCellDescriptor> weekCells = new ArrayList<MonthCellDescriptor>();
+      cells.add(weekCells);
+      for (int c = 0; c < 7; c++) {
+        final Date date = new Date(EpochDays.toMillis(day, timeZone));
+        final boolean isCurrentMonth = grid.isCurrentMonth(day);
+        final boolean isSelected =
+            isCurrentMonth && inSelection(day, selectedStartDay, selectedEndDay);
+        final boolean isSelectable = isCurrentMonth && betweenDates(day, minDay, maxDay);
+        final boolean isToday = day == todayDay;
+        final int value = grid.getDayOfMonth(day);
+        final MonthCellDescriptor cell =
+            createDescriptor(date, isCurrentMonth, isSelectable, isSelected, isToday, value);
+        cell.setEpochDay(day);
+        if (isSelected) {
+          cell.setRangeState(rangeState(day, selectedStartDay, selectedEndDay));
+        }
+        weekCells.add(cell);
+        day++;
+      }
+    }
+    return cells;
+  }
+
+  protected MonthCellDescriptor createDescriptor(Date date, boolean currentMonth,
+      boolean selectable, boolean selected, boolean today, int value) {
+    return new MonthCellDescriptor(date, currentMonth, selectable, selected, today, value);
+  }
+
+  private int toDay(Date date) {
+    return date == null ? NO_DAY : EpochDays.of(date, model.getTimeZone());
+  }
+
+  /** Include minDay but exclude maxDay. */
+  static boolean betweenDates(int day, int minDay, int maxDay) {
+    return day >= minDay && day < maxDay;
+  }
+
+  /**
+   * Whether {@code day} falls in the selection [startDay, endDay], both inclusive.  Without an end
+   * day, only the start day itself is selected.
+   */
+  static boolean inSelection(int day, int startDay, int endDay) {
+    if (startDay == NO_DAY) {
+      return false;
+    }
+    if (endDay == NO_DAY) {
+      return day == startDay;
+    }
+    return day >= startDay && day <= endDay;
+  }
+
+  /** Where {@code day}, which must be {@link #inSelection selected}, sits in the selection. */
+  static RangeState rangeState(int day, int startDay, int endDay) {
+    if (endDay == NO_DAY || endDay == startDay) {
+      return RangeState.SINGLE;
+    } else if (day == startDay) {
+      return RangeState.FIRST;
+    } else if (day == endDay) {
+      return RangeState.LAST;
+    }
+    return RangeState.MIDDLE;
+  }
+}
@@ -0,0 +1,128 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static java.util.Calendar.MONTH;
+import static java.util.Calendar.SATURDAY;
+import static java.util.Calendar.SUNDAY;
+import static java.util.Calendar.YEAR;
+
+/**
+ * The months between two dates, laid out for a first day of the week in a time zone.  Immutable,
+ * so it can be built once, on any thread, and shared by any number of pickers showing the same
+ * range, each keeping its own selection on top of it.  Has no Android dependencies: {@link
+ * CalendarCells} builds a month's cells from it on a plain JVM.
+ */
+public final class CalendarModel {
+  private final TimeZone timeZone;
+  private final int firstDayOfWeek;
+  private final int minDay;
+  private final int maxDay; // Exclusive.
+  private final MonthGrid[] grids;
+  private final String[] labels;
+
+  /**
+   * Builds a model of the months from {@code minDate} through {@code maxDate}.  Time of day is
+   * ignored.
+   *
+   * @param minDate Earliest selectable date, inclusive.  Must be earlier than {@code maxDate}.
+   * @param maxDate Latest selectable date, exclusive.  Must be later than {@code minDate}.
+   * @param timeZone Time zone the dates are interpreted in.
+   * @param firstDayOfWeek {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}.
+   * @param monthNameFormat Formats month titles.  A copy is used, so it's only read during this
+   * call and mustn't be in use by another thread until it returns.
+   */
+  public static CalendarModel create(Date minDate, Date maxDate, TimeZone timeZone,
+      int firstDayOfWeek, DateFormat monthNameFormat) {
+    if (minDate == null || maxDate == null || timeZone == null || monthNameFormat == null) {
+      throw new IllegalArgumentException("Dates, time zone and format must be non-null");
+    }
+    if (firstDayOfWeek < SUNDAY || firstDayOfWeek > SATURDAY) {
+      throw new IllegalArgumentException("Invalid first day of week: " + firstDayOfWeek);
+    }
+    final int minDay = EpochDays.of(minDate, timeZone);
+    final int maxDay = EpochDays.of(maxDate, timeZone);
+    if (minDay >= maxDay) {
+      throw new IllegalArgumentException("Min date must be before max date");
+    }
+    return new CalendarModel((TimeZone) timeZone.clone(), firstDayOfWeek, minDay, maxDay,
+        (DateFormat) monthNameFormat.clone());
+  }
+
+  private CalendarModel(TimeZone timeZone, int firstDayOfWeek, int minDay, int maxDay,
+      DateFormat monthNameFormat) {
+    this.timeZone = timeZone;
+    this.firstDayOfWeek = firstDayOfWeek;
+    this.minDay = minDay;
+    this.maxDay = maxDay;
+
+    // From the month of minDay through the month of the last selectable day.
+    final Calendar cal = Calendar.getInstance(timeZone);
+    monthNameFormat.setTimeZone(timeZone);
+    EpochDays.toCalendar(maxDay - 1, cal);
+    final int lastMonth = cal.get(YEAR) * 12 + cal.get(MONTH);
+    EpochDays.toCalendar(minDay, cal);
+    final int firstMonth = cal.get(YEAR) * 12 + cal.get(MONTH);
+    grids = new MonthGrid[lastMonth - firstMonth + 1];
+    labels = new String[grids.length];
+    for (int i = 0; i < grids.length; i++) {
+      cal.set(Calendar.DAY_OF_MONTH, 1);
+      grids[i] = MonthGridCache.get(cal.get(YEAR), cal.get(MONTH), firstDayOfWeek);
+      labels[i] = monthNameFormat.format(cal.getTime());
+      cal.add(MONTH, 1);
+    }
+  }
+
+  /** Returns a copy of the time zone the model's dates are interpreted in. */
+  public TimeZone getTimeZone() {
+    return (TimeZone) timeZone.clone();
+  }
+
+  public int getFirstDayOfWeek() {
+    return firstDayOfWeek;
+  }
+
+  public int getMonthCount() {
+    return grids.length;
+  }
+
+  /** Epoch day of the earliest selectable date, inclusive. */
+  int getMinDay() {
+    return minDay;
+  }
+
+  /** Epoch day of the latest selectable date, exclusive. */
+  int getMaxDay() {
+    return maxDay;
+  }
+
+  MonthGrid getGrid(int index) {
+    return grids[index];
+  }
+
+  String getLabel(int index) {
+    return labels[index];
+  }
+
+  /** Returns the index of the month containing {@code epochDay}, or -1 if it isn't shown. */
+  int indexOf(int epochDay) {
+    int low = 0;
+    int high = grids.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final MonthGrid grid = grids[mid];
+      if (epochDay < grid.getFirstDay()) {
+        high = mid - 1;
+      } else if (epochDay >= grid.getFirstDay() + grid.getLength()) {
+        low = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Source of the date formats the library's views use, so opening many pickers doesn't compile
+ * the same patterns over and over.  Formats are shared: callers only read them, never change
+ * their time zone or anything else, and only use them on the thread that got them, since
+ * {@link DateFormat} isn't thread-safe.
+ * <p>
+ * By default each thread keeps its own formats, keyed by locale, time zone and pattern or style,
+ * with the least recently used evicted beyond {@value #MAX_SIZE} per thread.  Apps that manage
+ * formats themselves can {@link #setProvider install} their own source.
+ */
+public final class DateFormats {
+  static final int MAX_SIZE = 32;
+
+  /** Creates or finds formats for {@link DateFormats}.  Must be safe to call from any thread. */
+  public interface Provider {
+    /**
+     * Returns a format of {@code pattern} in {@code locale} and {@code timeZone}, for use on the
+     * calling thread only.
+     */
+    DateFormat getPatternFormat(String pattern, Locale locale, TimeZone timeZone);
+
+    /**
+     * Returns the {@link DateFormat#getDateInstance(int, Locale) date format} of {@code style} in
+     * {@code locale} and {@code timeZone}, for use on the calling thread only.
+     */
+    DateFormat getDateFormat(int style, Locale locale, TimeZone timeZone);
+  }
+
+  private static final Provider PER_THREAD = new PerThreadProvider();
+  private static volatile Provider provider = PER_THREAD;
+
+  private DateFormats() {
+  }
+
+  /** Installs {@code provider} for every view created from now on.  Null restores the default. */
+  public static void setProvider(Provider provider) {
+    DateFormats.provider = provider != null ? provider : PER_THREAD;
+  }
+
+  /** Returns a shared format of {@code pattern} in the default locale and {@code timeZone}. */
+  public static DateFormat forPattern(String pattern, TimeZone timeZone) {
+    return provider.getPatternFormat(pattern, Locale.getDefault(), timeZone);
+  }
+
+  /** Returns a shared date format of {@code style} in the default locale and {@code timeZone}. */
+  public static DateFormat forStyle(int style, TimeZone timeZone) {
+    return provider.getDateFormat(style, Locale.getDefault(), timeZone);
+  }
+
+  private static final class PerThreadProvider implements Provider {
+    private final ThreadLocal<Map<Key, DateFormat>> formats =
+        new ThreadLocal<Map<Key, DateFormat>>() {
+          @Override protected Map<Key, DateFormat> initialValue() {
+            return new LinkedHashMap<Key, DateFormat>(16, 0.75f, true) {
+              @Override protected boolean removeEldestEntry(Map.Entry<Key, DateFormat> eldest) {
+                return size() > MAX_SIZE;
+              }
+            };
+          }
+        };
+
+    @Override public DateFormat getPatternFormat(String pattern, Locale locale,
+        TimeZone timeZone) {
+      final Key key = new Key(pattern, -1, locale, timeZone.getID());
+      final Map<Key, DateFormat> cache = formats.get();
+      DateFormat format = cache.get(key);
+      if (format == null) {
+        format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(timeZone);
+        cache.put(key, format);
+      }
+      return format;
+    }
+
+    @Override public DateFormat getDateFormat(int style, Locale locale, TimeZone timeZone) {
+      final Key key = new Key(null, style, locale, timeZone.getID());
+      final Map<Key, DateFormat> cache = formats.get();
+      DateFormat format = cache.get(key);
+      if (format == null) {
+        format = DateFormat.getDateInstance(style, locale);
+        format.setTimeZone(timeZone);
+        cache.put(key, format);
+      }
+      return format;
+    }
+  }
+
+  private static final class Key {
+    /** Null for a style. */
+    final String pattern;
+    final int style;
+    final Locale locale;
+    final String timeZoneId;
+
+    Key(String pattern, int style, Locale locale, String timeZoneId) {
+      this.pattern = pattern;
+      this.style = style;
+      this.locale = locale;
+      this.timeZoneId = timeZoneId;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) o;
+      return style == other.style
+          && (pattern == null ? other.pattern == null : pattern.equals(other.pattern))
+          && locale.equals(other.locale)
+          && timeZoneId.equals(other.timeZoneId);
+    }
+
+    @Override public int hashCode() {
+      int result = pattern == null ? style : pattern.hashCode();
+      result = 31 * result + locale.hashCode();
+      return 31 * result + timeZoneId.hashCode();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Converts instants to epoch days: the number of whole days since 1970-01-01 in a given time zone.
+ * Two instants on the same local date always map to the same epoch day, so day comparisons become
+ * plain int comparisons that are immune to DST transitions and time-of-day noise.
+ */
+final class EpochDays {
+  static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+  private EpochDays() {
+  }
+
+  static int of(Calendar cal) {
+    return of(cal.getTimeInMillis(), cal.getTimeZone());
+  }
+
+  static int of(Date date, TimeZone timeZone) {
+    return of(date.getTime(), timeZone);
+  }
+
+  static int of(long millis, TimeZone timeZone) {
+    final long localMillis = millis + timeZone.getOffset(millis);
+    long days = localMillis / MILLIS_PER_DAY;
+    if (localMillis % MILLIS_PER_DAY < 0) {
+      days--; // Round towards negative infinity for dates before 1970.
+    }
+    return (int) days;
+  }
+
+  /**
+   * Returns the instant {@code epochDay} starts in {@code timeZone}.  Reads the zone's offsets
+   * rather than doing calendar field arithmetic, so it's cheap enough to call for every cell of a
+   * month.
+   */
+  static long toMillis(int epochDay, TimeZone timeZone) {
+    final long localMillis = epochDay * MILLIS_PER_DAY;
+    final int offset = timeZone.getOffset(localMillis - timeZone.getOffset(localMillis));
+    final int nextOffset = timeZone.getOffset(localMillis - offset);
+    // The two differ only around a DST transition at midnight.  The smaller one starts a day
+    // whose midnight was skipped right after the gap, as a lenient calendar does.
+    return localMillis - Math.min(offset, nextOffset);
+  }
+
+  /**
+   * Returns the epoch day of a date, {@code month} being a {@link Calendar#MONTH} value.  Pure
+   * arithmetic, so it's safe on any thread.  Only valid after the Gregorian cutover of 1582.
+   */
+  static int fromDate(int year, int month, int dayOfMonth) {
+    // The inverse of toCalendar(): count from 0000-03-01 so leap days end each 400 year era.
+    final int shiftedYear = month <= Calendar.FEBRUARY ? year - 1 : year;
+    final int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+    final int yearOfEra = shiftedYear - era * 400;
+    final int shiftedMonth = month <= Calendar.FEBRUARY ? month + 10 : month - 2; // March is 0.
+    final int dayOfYear = (153 * shiftedMonth + 2) / 5 + dayOfMonth - 1;
+    final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /** Returns the length of {@code month}, a {@link Calendar#MONTH} value, of {@code year}. */
+  static int lengthOfMonth(int year, int month) {
+    return month == Calendar.DECEMBER
+        ? 31 : fromDate(year, month + 1, 1) - fromDate(year, month, 1);
+  }
+
+  /**
+   * Sets {@code cal} to the start of {@code epochDay} in its own time zone.  The date fields are
+   * derived arithmetically, so this allocates nothing.  Only valid after the Gregorian cutover of
+   * 1582.
+   */
+  static void toCalendar(int epochDay, Calendar cal) {
+    // Shift the epoch to 0000-03-01 so leap days fall at the end of each 400 year era.
+    final int shifted = epochDay + 719468;
+    final int era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+    final int dayOfEra = shifted - era * 146097;
+    final int yearOfEra =
+        (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    final int shiftedMonth = (5 * dayOfYear + 2) / 153; // March is 0.
+    final int dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    final int month = shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10; // Calendar.MONTH
+    final int year = yearOfEra + era * 400 + (month <= Calendar.FEBRUARY ? 1 : 0);
+    cal.clear();
+    cal.set(year, month, dayOfMonth);
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+/**
+ * Shades days by a count, such as bookings per day.  Counts are bucketed once, when the heatmap is
+ * built, into one byte per day; looking up a day's color is then an array read and a palette
+ * read, with nothing allocated or computed per cell.  Immutable.
+ * <p>
+ * Buckets are linear in the count: the highest count gets the last palette color, a count of one
+ * the first, and days with no count aren't shaded.
+ */
+public final class Heatmap {
+  /** Largest palette a heatmap accepts. */
+  public static final int MAX_PALETTE_SIZE = 255;
+
+  /** Bucket of each day plus one, so 0 is unshaded. */
+  private final byte[] buckets;
+  private final int[] palette;
+
+  /**
+   * @param counts Count for each day, indexed by the day's offset from the first day, such as a
+   * picker's min date.  Zero or negative counts are unshaded.  Only read during this call.
+   * @param palette ARGB color of each bucket, lightest first.  Copied.
+   */
+  public Heatmap(int[] counts, int[] palette) {
+    if (counts == null || palette == null) {
+      throw new IllegalArgumentException("Counts and palette must be non-null");
+    }
+    if (palette.length == 0 || palette.length > MAX_PALETTE_SIZE) {
+      throw new IllegalArgumentException("Palette must have 1 to " + MAX_PALETTE_SIZE
+          + " colors: " + palette.length);
+    }
+    this.palette = palette.clone();
+
+    int max = 0;
+    for (int count : counts) {
+      max = Math.max(max, count);
+    }
+    buckets = new byte[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      final int count = counts[i];
+      if (count > 0) {
+        buckets[i] = (byte) ((count - 1L) * palette.length / max + 1);
+      }
+    }
+  }
+
+  /** Number of days with a count, shaded or not. */
+  public int getDayCount() {
+    return buckets.length;
+  }
+
+  /**
+   * Returns the palette index of the day at {@code dayOffset}, or -1 if it has no positive count or
+   * is outside the counts.
+   */
+  public int bucketAt(int dayOffset) {
+    if (dayOffset < 0 || dayOffset >= buckets.length) {
+      return -1;
+    }
+    return (buckets[dayOffset] & 0xff) - 1;
+  }
+
+  /** Returns the color of the day at {@code dayOffset}, or 0, transparent, if it isn't shaded. */
+  public int colorAt(int dayOffset) {
+    final int bucket = bucketAt(dayOffset);
+    return bucket < 0 ? 0 : palette[bucket];
+  }
+}
@@ -3,14 +3,30 @@ package com.squareup.timessquare;
 
 import java.util.Date;
 
-/** Describes the state of a particular date cell in a {@link MonthView}. */
+/** Describes the state of a particular date cell in a {@code MonthView}. */
 public class MonthCellDescriptor {
+  /** Where a cell sits in the selected range, for drawing ranges as one continuous shape. */
+  public enum RangeState {
+    /** Not part of a range. */
+    NONE,
+    /** The earliest day of a range of two or more days. */
+    FIRST,
+    /** Neither the earliest nor the latest day of a range. */
+    MIDDLE,
+    /** The latest day of a range of two or more days. */
+    LAST,
+    /** The only day of a range, e.g. a start date without an end date. */
+    SINGLE
+  }
+
   private final Date date;
   private final int value;
   private final boolean isCurrentMonth;
   private boolean isSelected;
   private final boolean isToday;
   private final boolean isSelectable;
+  private int epochDay;
+  private RangeState rangeState = RangeState.NONE;
 
   public MonthCellDescriptor(Date date, boolean currentMonth, boolean selectable, boolean selected,
       boolean today, int value) {
@@ -42,6 +58,14 @@ public class MonthCellDescriptor {
     isSelected = selected;
   }
 
+  public RangeState getRangeState() {
+    return rangeState;
+  }
+
+  public void setRangeState(RangeState rangeState) {
+    this.rangeState = rangeState;
+  }
+
   public boolean isToday() {
     return isToday;
   }
@@ -50,16 +74,29 @@ public class MonthCellDescriptor {
     return value;
   }
 
+  /** Days since 1970-01-01 in the owning picker's time zone.  Set by the picker after creation. */
+  int getEpochDay() {
+    return epochDay;
+  }
+
+  void setEpochDay(int epochDay) {
+    this.epochDay = epochDay;
+  }
+
   @Override public String toString() {
     return "MonthCellDescriptor{"
         + "date="
         + date
         + ", value="
         + value
+        + ", epochDay="
+        + epochDay
         + ", isCurrentMonth="
         + isCurrentMonth
         + ", isSelected="
         + isSelected
+        + ", rangeState="
+        + rangeState
         + ", isToday="
         + isToday
         + ", isSelectable="
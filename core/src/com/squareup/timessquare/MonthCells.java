@@ -0,0 +1,123 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cell grids of a picker's months, indexed like its month list.  Grids are built on demand by
+ * a {@link Builder}.  While every grid fits the memory budget they are all kept, as a plain list
+ * would.  Past the budget only the most recently used grids are kept and the others are rebuilt
+ * when next needed, so a picker over a very long range holds a bounded model.
+ */
+final class MonthCells extends AbstractList<List<List<MonthCellDescriptor>>> {
+  /** Default {@link #reset(int, long) budget} for a picker's model. */
+  static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  // Rough heap costs, for a 32-bit VM: a descriptor with its Date, a week row list, and a month's
+  // descriptor with its label.  Grids are costed at six weeks, the most a month can need.
+  static final int CELL_BYTES = 64;
+  static final int WEEK_BYTES = 72;
+  static final int MONTH_BYTES = 96;
+  static final int GRID_BYTES = 6 * (7 * CELL_BYTES + WEEK_BYTES) + 64;
+
+  /**
+   * Fewest grids kept when windowing.  Comfortably more than a picker shows at once, so grids bound
+   * to visible {@code MonthView}s are never the least recently used.
+   */
+  static final int MIN_RESIDENT = 12;
+
+  interface Builder {
+    /** Returns a new grid for the month at {@code index}. */
+    List<List<MonthCellDescriptor>> build(int index);
+  }
+
+  private final Builder builder;
+  /** Grid for each month index, or null if it isn't built. */
+  private final List<List<List<MonthCellDescriptor>>> grids =
+      new ArrayList<List<List<MonthCellDescriptor>>>();
+  /** Indices of the built grids, least recently used first.  Only maintained when windowed. */
+  private final Map<Integer, Boolean> recency =
+      new LinkedHashMap<Integer, Boolean>(16, 0.75f, true);
+  private int resident;
+  private int maxResident;
+
+  MonthCells(Builder builder) {
+    this.builder = builder;
+  }
+
+  /**
+   * Drops every grid and sizes the list for {@code size} months.  If their grids all fit in
+   * {@code maxBytes} they are built now and kept; otherwise they are built lazily and only as many
+   * as fit are kept.
+   */
+  void reset(int size, long maxBytes) {
+    grids.clear();
+    recency.clear();
+    resident = 0;
+    for (int i = 0; i < size; i++) {
+      grids.add(null);
+    }
+    final long gridBudget = maxBytes - (long) size * MONTH_BYTES;
+    final long fits = Math.max(gridBudget / GRID_BYTES, MIN_RESIDENT);
+    if (fits >= size) {
+      maxResident = size;
+      for (int i = 0; i < size; i++) {
+        get(i);
+      }
+    } else {
+      maxResident = (int) fits;
+    }
+  }
+
+  /** Whether grids are built lazily and evicted, rather than all kept. */
+  boolean isWindowed() {
+    return maxResident < grids.size();
+  }
+
+  @Override public List<List<MonthCellDescriptor>> get(int index) {
+    List<List<MonthCellDescriptor>> grid = grids.get(index);
+    if (grid == null) {
+      grid = builder.build(index);
+      grids.set(index, grid);
+      resident++;
+    }
+    if (isWindowed()) {
+      recency.put(index, Boolean.TRUE);
+      if (resident > maxResident) {
+        final Iterator<Integer> eldest = recency.keySet().iterator();
+        grids.set(eldest.next(), null);
+        eldest.remove();
+        resident--;
+      }
+    }
+    return grid;
+  }
+
+  /** Returns the grid for {@code index} if it's currently built, or null.  Never builds one. */
+  List<List<MonthCellDescriptor>> peek(int index) {
+    return grids.get(index);
+  }
+
+  @Override public int size() {
+    return grids.size();
+  }
+
+  /** Number of grids currently held. */
+  int residentCount() {
+    return resident;
+  }
+
+  /** Estimated heap held by the month descriptors and the grids currently built, in bytes. */
+  long estimateBytes() {
+    return (long) grids.size() * MONTH_BYTES + (long) resident * GRID_BYTES;
+  }
+
+  @Override public void clear() {
+    reset(0, 0);
+  }
+}
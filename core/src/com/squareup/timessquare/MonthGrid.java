@@ -0,0 +1,106 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Calendar;
+
+import static java.util.Calendar.JANUARY;
+
+/**
+ * Day layout of one month for a given first day of the week: where its days fall in a grid of
+ * whole weeks, including the leading and trailing days borrowed from its neighbors.  Immutable and
+ * derived by arithmetic alone, so it can be built on any thread and shared by every view showing
+ * the month.  Cells are addressed by epoch day; the first cell is {@link #getFirstCellDay()} and
+ * each following cell is the next day.
+ */
+final class MonthGrid {
+  private final int year;
+  private final int month;
+  private final int firstDayOfWeek;
+  private final int firstDay;
+  private final int length;
+  private final int previousLength;
+  private final int leadingDays;
+  private final int weekCount;
+
+  /**
+   * @param month A {@link Calendar#MONTH} value.
+   * @param firstDayOfWeek {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}.
+   */
+  MonthGrid(int year, int month, int firstDayOfWeek) {
+    this.year = year;
+    this.month = month;
+    this.firstDayOfWeek = firstDayOfWeek;
+    firstDay = EpochDays.fromDate(year, month, 1);
+    length = EpochDays.lengthOfMonth(year, month);
+    previousLength = month == JANUARY ? 31 : EpochDays.lengthOfMonth(year, month - 1);
+    leadingDays = (WeekLayout.dayOfWeek(firstDay) - firstDayOfWeek + 7) % 7;
+    weekCount = (leadingDays + length + 6) / 7;
+  }
+
+  int getYear() {
+    return year;
+  }
+
+  /** Returns the {@link Calendar#MONTH}. */
+  int getMonth() {
+    return month;
+  }
+
+  int getFirstDayOfWeek() {
+    return firstDayOfWeek;
+  }
+
+  /** Returns the epoch day of the 1st. */
+  int getFirstDay() {
+    return firstDay;
+  }
+
+  /** Returns the epoch day shown in the first cell. */
+  int getFirstCellDay() {
+    return firstDay - leadingDays;
+  }
+
+  int getLength() {
+    return length;
+  }
+
+  /** Returns how many cells of the previous month precede the 1st. */
+  int getLeadingDays() {
+    return leadingDays;
+  }
+
+  /** Returns how many cells of the next month follow the last day. */
+  int getTrailingDays() {
+    return weekCount * 7 - leadingDays - length;
+  }
+
+  int getWeekCount() {
+    return weekCount;
+  }
+
+  boolean isCurrentMonth(int epochDay) {
+    return epochDay >= firstDay && epochDay < firstDay + length;
+  }
+
+  /** Returns the day of the month shown for {@code epochDay}, a day in the grid. */
+  int getDayOfMonth(int epochDay) {
+    final int offset = epochDay - firstDay;
+    if (offset < 0) {
+      return previousLength + offset + 1;
+    }
+    return offset < length ? offset + 1 : offset - length + 1;
+  }
+
+  @Override public String toString() {
+    return "MonthGrid{"
+        + "year="
+        + year
+        + ", month="
+        + month
+        + ", firstDayOfWeek="
+        + firstDayOfWeek
+        + ", weekCount="
+        + weekCount
+        + '}';
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of month layouts.  A month's layout never changes for a given first day of the
+ * week, so every picker, {@code MonthView} and {@code CalendarYearView} in the process shares one
+ * instance per month instead of recomputing it on every {@code init()}.  Bounded to the most
+ * recently used {@value #MAX_SIZE} layouts.  Safe to use from any thread.
+ * <p>
+ * The hit and miss counts are cumulative for the process, for telemetry.
+ */
+public final class MonthGridCache {
+  /** Twenty years of months for each of two first days of the week. */
+  static final int MAX_SIZE = 20 * 12 * 2;
+
+  private static final Map<Integer, MonthGrid> GRIDS =
+      new LinkedHashMap<Integer, MonthGrid>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, MonthGrid> eldest) {
+          return size() > MAX_SIZE;
+        }
+      };
+  private static long hitCount;
+  private static long missCount;
+
+  private MonthGridCache() {
+  }
+
+  /**
+   * Returns the layout of {@code month} ({@link java.util.Calendar#MONTH}) of {@code year} for
+   * {@code firstDayOfWeek}.
+   */
+  static MonthGrid get(int year, int month, int firstDayOfWeek) {
+    // Months and days of the week both fit in 4 bits.
+    final Integer key = ((year << 4) | month) << 4 | firstDayOfWeek;
+    synchronized (GRIDS) {
+      MonthGrid grid = GRIDS.get(key);
+      if (grid != null) {
+        hitCount++;
+        return grid;
+      }
+      missCount++;
+      grid = new MonthGrid(year, month, firstDayOfWeek);
+      GRIDS.put(key, grid);
+      return grid;
+    }
+  }
+
+  /** Number of lookups answered from the cache since the process started. */
+  public static long hitCount() {
+    synchronized (GRIDS) {
+      return hitCount;
+    }
+  }
+
+  /** Number of lookups that had to compute a layout since the process started. */
+  public static long missCount() {
+    synchronized (GRIDS) {
+      return missCount;
+    }
+  }
+
+  /** Number of layouts currently cached. */
+  public static int size() {
+    synchronized (GRIDS) {
+      return GRIDS.size();
+    }
+  }
+
+  /** Drops every cached layout.  The counts are kept. */
+  public static void evictAll() {
+    synchronized (GRIDS) {
+      GRIDS.clear();
+    }
+  }
+}
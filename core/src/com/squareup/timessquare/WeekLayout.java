@@ -0,0 +1,68 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+
+import static java.util.Calendar.SATURDAY;
+import static java.util.Calendar.SUNDAY;
+
+/**
+ * Column arrangement of a month grid for a given first day of the week.  The weekday header labels
+ * and the column of each day of the week are computed once here.  Month layouts themselves are
+ * {@link MonthGrid}s.
+ */
+final class WeekLayout {
+  private final int firstDayOfWeek;
+  private final String[] headerLabels = new String[7];
+  /** Column of each {@link Calendar#DAY_OF_WEEK}. */
+  private final int[] columns = new int[SATURDAY + 1];
+
+  /**
+   * @param firstDayOfWeek {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}.
+   * @param weekdayNameFormat Used to render the header labels.
+   */
+  WeekLayout(int firstDayOfWeek, DateFormat weekdayNameFormat) {
+    if (firstDayOfWeek < SUNDAY || firstDayOfWeek > SATURDAY) {
+      throw new IllegalArgumentException("Invalid first day of week: " + firstDayOfWeek);
+    }
+    this.firstDayOfWeek = firstDayOfWeek;
+
+    final Calendar cal = Calendar.getInstance(weekdayNameFormat.getTimeZone());
+    for (int c = 0; c < 7; c++) {
+      final int dayOfWeek = columnDayOfWeek(c);
+      cal.set(Calendar.DAY_OF_WEEK, dayOfWeek);
+      headerLabels[c] = weekdayNameFormat.format(cal.getTime());
+      columns[dayOfWeek] = c;
+    }
+  }
+
+  int getFirstDayOfWeek() {
+    return firstDayOfWeek;
+  }
+
+  /** Returns the header label for {@code column}, 0 through 6. */
+  String getHeaderLabel(int column) {
+    return headerLabels[column];
+  }
+
+  /** Returns the {@link Calendar#DAY_OF_WEEK} shown in {@code column}, 0 through 6. */
+  int columnDayOfWeek(int column) {
+    return (firstDayOfWeek - SUNDAY + column) % 7 + SUNDAY;
+  }
+
+  /** Returns the column, 0 through 6, that {@code epochDay} falls in. */
+  int columnOf(int epochDay) {
+    return columns[dayOfWeek(epochDay)];
+  }
+
+  /** Returns the {@link Calendar#DAY_OF_WEEK} of an epoch day. */
+  static int dayOfWeek(int epochDay) {
+    // 1970-01-01 was a Thursday.
+    int offset = (epochDay + Calendar.THURSDAY - SUNDAY) % 7;
+    if (offset < 0) {
+      offset += 7;
+    }
+    return offset + SUNDAY;
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Calendar.DECEMBER;
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+/** Runs on a plain JVM: nothing here touches Android. */
+public class CalendarCellsTest {
+  private final TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+  private CalendarModel model;
+  private CalendarCells calendarCells;
+
+  @Before
+  public void setUp() throws Exception {
+    model = CalendarModel.create(date(2012, NOVEMBER, 16), date(2013, NOVEMBER, 16), timeZone,
+        SUNDAY, new SimpleDateFormat("MMMM yyyy", Locale.US));
+    calendarCells = new CalendarCells(model, date(2012, NOVEMBER, 20));
+  }
+
+  @Test
+  public void testModelMonths() throws Exception {
+    assertThat(model.getMonthCount()).isEqualTo(13);
+    assertThat(model.getLabel(0)).isEqualTo("November 2012");
+    assertThat(model.getLabel(12)).isEqualTo("November 2013");
+    assertThat(model.indexOf(EpochDays.fromDate(2012, DECEMBER, 31))).isEqualTo(1);
+    assertThat(model.indexOf(EpochDays.fromDate(2014, DECEMBER, 31))).isEqualTo(-1);
+  }
+
+  @Test
+  public void testSelectableAndToday() throws Exception {
+    // November 2012 starts on a Thursday, so it needs five Sunday-first weeks.
+    List<List<MonthCellDescriptor>> cells = calendarCells.build(0, null, null);
+    assertThat(cells).hasSize(5);
+    assertCell(cells, 0, 0, 28, false, false, false);
+    assertCell(cells, 2, 4, 15, true, false, false);
+    assertCell(cells, 2, 5, 16, true, true, false);
+    assertThat(cells.get(3).get(2).isToday()).isTrue();
+    assertThat(cells.get(3).get(2).getValue()).isEqualTo(20);
+  }
+
+  @Test
+  public void testRangeAcrossMonths() throws Exception {
+    final Date start = date(2012, NOVEMBER, 29);
+    final Date end = date(2012, DECEMBER, 2);
+    List<List<MonthCellDescriptor>> november = calendarCells.build(0, start, end);
+    assertCell(november, 4, 4, 29, true, true, true);
+    assertThat(november.get(4).get(4).getRangeState()).isEqualTo(RangeState.FIRST);
+    assertThat(november.get(4).get(5).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    // The trailing December days belong to the next month, so they're never selected here.
+    assertThat(november.get(4).get(6).isSelected()).isFalse();
+
+    List<List<MonthCellDescriptor>> december = calendarCells.build(1, start, end);
+    assertCell(december, 0, 6, 1, true, true, true);
+    assertThat(december.get(0).get(6).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    assertThat(december.get(1).get(0).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(december.get(1).get(1).getRangeState()).isEqualTo(RangeState.NONE);
+  }
+
+  @Test
+  public void testStartedRangeIsSingle() throws Exception {
+    List<List<MonthCellDescriptor>> cells = calendarCells.build(0, date(2012, NOVEMBER, 22), null);
+    assertThat(cells.get(3).get(4).isSelected()).isTrue();
+    assertThat(cells.get(3).get(4).getRangeState()).isEqualTo(RangeState.SINGLE);
+    assertThat(cells.get(3).get(5).isSelected()).isFalse();
+  }
+
+  @Test
+  public void testCellDatesStartTheirDaysAcrossDst() throws Exception {
+    // November 2012 and March 2013 each have a DST transition in New York.
+    final Calendar cal = Calendar.getInstance(timeZone);
+    for (int index = 0; index < model.getMonthCount(); index++) {
+      for (List<MonthCellDescriptor> week : calendarCells.build(index, null, null)) {
+        for (MonthCellDescriptor cell : week) {
+          EpochDays.toCalendar(cell.getEpochDay(), cal);
+          assertThat(cell.getDate()).isEqualTo(cal.getTime());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDayStartsAfterAMidnightDstGap() throws Exception {
+    // Sao Paulo skipped from midnight to 1am on October 21st, 2012.
+    final TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+    final int day = EpochDays.fromDate(2012, Calendar.OCTOBER, 21);
+    final long start = EpochDays.toMillis(day, saoPaulo);
+    assertThat(EpochDays.of(start, saoPaulo)).isEqualTo(day);
+    assertThat(EpochDays.of(start - 1, saoPaulo)).isEqualTo(day - 1);
+    final Calendar cal = Calendar.getInstance(saoPaulo);
+    EpochDays.toCalendar(day, cal);
+    assertThat(start).isEqualTo(cal.getTimeInMillis());
+  }
+
+  private Date date(int year, int month, int day) {
+    final Calendar cal = Calendar.getInstance(timeZone);
+    cal.clear();
+    cal.set(year, month, day, 12, 0);
+    return cal.getTime();
+  }
+
+  private static void assertCell(List<List<MonthCellDescriptor>> cells, int row, int col,
+      int expectedVal, boolean expectedCurrentMonth, boolean expectedSelectable,
+      boolean expectedSelected) {
+    final MonthCellDescriptor cell = cells.get(row).get(col);
+    assertThat(cell.getValue()).isEqualTo(expectedVal);
+    assertThat(cell.isCurrentMonth()).isEqualTo(expectedCurrentMonth);
+    assertThat(cell.isSelectable()).isEqualTo(expectedSelectable);
+    assertThat(cell.isSelected()).isEqualTo(expectedSelected);
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DateFormatsTest {
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+
+  @After
+  public void tearDown() throws Exception {
+    DateFormats.setProvider(null);
+  }
+
+  @Test
+  public void testFormatsAreSharedPerPatternAndTimeZone() throws Exception {
+    DateFormat format = DateFormats.forPattern("MMMM yyyy", UTC);
+    assertThat(DateFormats.forPattern("MMMM yyyy", UTC)).isSameAs(format);
+    assertThat(DateFormats.forPattern("EEE", UTC)).isNotSameAs(format);
+    assertThat(DateFormats.forStyle(DateFormat.MEDIUM, UTC)).isNotSameAs(format);
+
+    DateFormat tokyo = DateFormats.forPattern("MMMM yyyy", TOKYO);
+    assertThat(tokyo).isNotSameAs(format);
+    assertThat(tokyo.getTimeZone()).isEqualTo(TOKYO);
+    // Last instant of 2012 in UTC is already 2013 in Tokyo.
+    Date date = new Date(1356998399000L);
+    assertThat(DateFormats.forPattern("yyyy", UTC).format(date)).isEqualTo("2012");
+    assertThat(DateFormats.forPattern("yyyy", TOKYO).format(date)).isEqualTo("2013");
+  }
+
+  @Test
+  public void testEachThreadGetsItsOwnFormats() throws Exception {
+    final DateFormat[] other = new DateFormat[1];
+    Thread thread = new Thread() {
+      @Override public void run() {
+        other[0] = DateFormats.forStyle(DateFormat.MEDIUM, UTC);
+      }
+    };
+    thread.start();
+    thread.join();
+    assertThat(other[0]).isNotNull();
+    assertThat(DateFormats.forStyle(DateFormat.MEDIUM, UTC)).isNotSameAs(other[0]);
+  }
+
+  @Test
+  public void testProviderCanBeReplaced() throws Exception {
+    final DateFormat fixed = DateFormat.getDateInstance(DateFormat.SHORT, Locale.US);
+    DateFormats.setProvider(new DateFormats.Provider() {
+      @Override public DateFormat getPatternFormat(String pattern, Locale locale,
+          TimeZone timeZone) {
+        return fixed;
+      }
+
+      @Override public DateFormat getDateFormat(int style, Locale locale, TimeZone timeZone) {
+        return fixed;
+      }
+    });
+    assertThat(DateFormats.forPattern("EEE", UTC)).isSameAs(fixed);
+
+    DateFormats.setProvider(null);
+    assertThat(DateFormats.forPattern("EEE", UTC)).isNotSameAs(fixed);
+  }
+}
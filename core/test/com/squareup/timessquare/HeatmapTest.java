@@ -0,0 +1,54 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+public class HeatmapTest {
+  private static final int[] PALETTE = { 0xffeeeeee, 0xffaaaaaa, 0xff666666, 0xff222222 };
+
+  @Test
+  public void testBucketsAreLinearInCount() throws Exception {
+    Heatmap heatmap = new Heatmap(new int[] { 0, 1, 25, 26, 50, 51, 75, 76, 100, -3 }, PALETTE);
+    assertThat(heatmap.getDayCount()).isEqualTo(10);
+    assertThat(heatmap.bucketAt(0)).isEqualTo(-1);
+    assertThat(heatmap.bucketAt(1)).isEqualTo(0);
+    assertThat(heatmap.bucketAt(2)).isEqualTo(0);
+    assertThat(heatmap.bucketAt(3)).isEqualTo(1);
+    assertThat(heatmap.bucketAt(4)).isEqualTo(1);
+    assertThat(heatmap.bucketAt(5)).isEqualTo(2);
+    assertThat(heatmap.bucketAt(7)).isEqualTo(3);
+    assertThat(heatmap.bucketAt(8)).isEqualTo(3);
+    assertThat(heatmap.bucketAt(9)).isEqualTo(-1);
+    assertThat(heatmap.colorAt(8)).isEqualTo(0xff222222);
+    assertThat(heatmap.colorAt(0)).isEqualTo(0);
+  }
+
+  @Test
+  public void testOutsideCountsIsUnshaded() throws Exception {
+    Heatmap heatmap = new Heatmap(new int[] { 5 }, PALETTE);
+    assertThat(heatmap.colorAt(0)).isEqualTo(0xff222222);
+    assertThat(heatmap.colorAt(-1)).isEqualTo(0);
+    assertThat(heatmap.colorAt(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void testPaletteIsCopied() throws Exception {
+    int[] palette = PALETTE.clone();
+    Heatmap heatmap = new Heatmap(new int[] { 1 }, palette);
+    palette[0] = 0;
+    assertThat(heatmap.colorAt(0)).isEqualTo(0xffeeeeee);
+  }
+
+  @Test
+  public void testPaletteSize() throws Exception {
+    try {
+      new Heatmap(new int[0], new int[0]);
+      fail("Should not accept an empty palette");
+    } catch (IllegalArgumentException expected) {
+    }
+    new Heatmap(new int[0], new int[Heatmap.MAX_PALETTE_SIZE]);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.widget.CheckedTextView;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+
+/**
+ * A day cell.  Adds the cell's {@link RangeState} to its drawable state as one of
+ * {@code state_range_first}, {@code state_range_middle}, {@code state_range_last} or
+ * {@code state_range_single}, so selectors can draw a range as a continuous pill without
+ * looking at neighboring cells.  A day with keyboard focus also gets {@code state_day_focused}.
+ * <p>
+ * A {@link Heatmap} color, if any, is drawn over the background unless the selector is showing
+ * the cell as selected, pressed or today.
+ */
+public class CalendarCellView extends CheckedTextView {
+  private static final int[] STATE_RANGE_FIRST = { R.attr.state_range_first };
+  private static final int[] STATE_RANGE_MIDDLE = { R.attr.state_range_middle };
+  private static final int[] STATE_RANGE_LAST = { R.attr.state_range_last };
+  private static final int[] STATE_RANGE_SINGLE = { R.attr.state_range_single };
+  private static final int[] STATE_DAY_FOCUSED = { R.attr.state_day_focused };
+
+  private RangeState rangeState = RangeState.NONE;
+  private boolean dayFocused;
+  private int heatColor;
+
+  public CalendarCellView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+  }
+
+  public RangeState getRangeState() {
+    return rangeState;
+  }
+
+  public void setRangeState(RangeState rangeState) {
+    if (this.rangeState != rangeState) {
+      this.rangeState = rangeState;
+      refreshDrawableState();
+    }
+  }
+
+  public boolean isDayFocused() {
+    return dayFocused;
+  }
+
+  /**
+   * Marks the cell as the day with keyboard focus.  Separate from view focus, which the picker
+   * keeps for itself so arrow keys never go through the framework's focus search.
+   */
+  public void setDayFocused(boolean dayFocused) {
+    if (this.dayFocused != dayFocused) {
+      this.dayFocused = dayFocused;
+      refreshDrawableState();
+    }
+  }
+
+  public int getHeatColor() {
+    return heatColor;
+  }
+
+  /** Sets the heatmap color of the day, or 0 for none. */
+  public void setHeatColor(int heatColor) {
+    if (this.heatColor != heatColor) {
+      this.heatColor = heatColor;
+      invalidate();
+    }
+  }
+
+  @Override protected void onDraw(Canvas canvas) {
+    // Unchecked is today: see MonthView.stylizeCellViewDefault().
+    if (heatColor != 0 && !isSelected() && !isPressed() && isChecked()) {
+      canvas.drawColor(heatColor);
+    }
+    super.onDraw(canvas);
+  }
+
+  @Override protected int[] onCreateDrawableState(int extraSpace) {
+    final int[] state = super.onCreateDrawableState(extraSpace + 2);
+    if (dayFocused) {
+      mergeDrawableStates(state, STATE_DAY_FOCUSED);
+    }
+    switch (rangeState) {
+      case FIRST:
+        mergeDrawableStates(state, STATE_RANGE_FIRST);
+        break;
+      case MIDDLE:
+        mergeDrawableStates(state, STATE_RANGE_MIDDLE);
+        break;
+      case LAST:
+        mergeDrawableStates(state, STATE_RANGE_LAST);
+        break;
+      case SINGLE:
+        mergeDrawableStates(state, STATE_RANGE_SINGLE);
+        break;
+      default:
+        break;
+    }
+    return state;
+  }
+}
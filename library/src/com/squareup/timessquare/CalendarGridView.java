@@ -20,6 +20,11 @@ import static android.view.View.MeasureSpec.makeMeasureSpec;
 public class CalendarGridView extends ViewGroup {
   private final Paint dividerPaint = new Paint();
   private float aspectRatio = 1f;
+  /** Sizes shared with the owning picker's other grids, or null to compute them here. */
+  private GridMetrics metrics;
+  /** Divider endpoints (x0, y0, x1, y1 each), computed once per layout for one drawLines call. */
+  float[] dividers = new float[0];
+  int dividerPointCount;
 
   public CalendarGridView(Context context, AttributeSet attrs) {
     super(context, attrs);
@@ -46,44 +51,33 @@ public class CalendarGridView extends ViewGroup {
 
   @Override protected void dispatchDraw(Canvas canvas) {
     super.dispatchDraw(canvas);
-    final ViewGroup row = (ViewGroup) getChildAt(1);
-    int top = row.getTop();
-    int bottom = getBottom();
-    // Left side border.
-    final int left = row.getChildAt(0).getLeft() + getLeft();
-    canvas.drawLine(left, top, left, bottom, dividerPaint);
-
-    // Each cell's right-side border.
-    for (int c = 0; c < 7; c++) {
-      int x = left + row.getChildAt(c).getRight() - 1;
-      canvas.drawLine(x, top, x, bottom, dividerPaint);
-    }
-  }
-
-  @Override protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
-    final boolean retVal = super.drawChild(canvas, child, drawingTime);
-    // Draw a bottom border.
-    final int bottom = child.getBottom() - 1;
-    canvas.drawLine(child.getLeft(), bottom, child.getRight(), bottom, dividerPaint);
-    return retVal;
+    canvas.drawLines(dividers, 0, dividerPointCount, dividerPaint);
   }
 
   @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
     long start = System.currentTimeMillis();
     int totalWidth = MeasureSpec.getSize(widthMeasureSpec);
-    int cellWidth = totalWidth / 7;
-    int cellHeight = Math.round(cellWidth / aspectRatio);
+    final int cellWidth;
+    final int cellHeight;
+    if (metrics != null) {
+      metrics.update(totalWidth, aspectRatio);
+      cellWidth = metrics.getCellWidth();
+      cellHeight = metrics.getCellHeight();
+    } else {
+      cellWidth = totalWidth / 7;
+      cellHeight = Math.round(cellWidth / aspectRatio);
+    }
     totalWidth = cellWidth * 7; // Remove any extra pixels since /7 is unlikely to give whole nums.
     int totalHeight = 0;
     final int rowWidthSpec = makeMeasureSpec(totalWidth, EXACTLY);
     final int rowHeightSpec = makeMeasureSpec(cellHeight, EXACTLY);
     for (int c = 0, numChildren = getChildCount(); c < numChildren; c++) {
-      final View child = getChildAt(c);
+      final CalendarRowView child = (CalendarRowView) getChildAt(c);
       if (child.getVisibility() == View.VISIBLE) {
         if (c == 0) { // It's the header: height should be wrap_content.
-          measureChild(child, rowWidthSpec, makeMeasureSpec(cellHeight, AT_MOST));
+          measureRow(child, rowWidthSpec, makeMeasureSpec(cellHeight, AT_MOST));
         } else {
-          measureChild(child, rowWidthSpec, rowHeightSpec);
+          measureRow(child, rowWidthSpec, rowHeightSpec);
         }
         totalHeight += child.getMeasuredHeight();
       }
@@ -93,6 +87,29 @@ public class CalendarGridView extends ViewGroup {
     Logr.d("Grid.onMeasure %d ms", System.currentTimeMillis() - start);
   }
 
+  /**
+   * Like {@link #measureChild}, but skips a row already measured with the same specs.  With shared
+   * {@link GridMetrics} the specs only change with the width, so recycled months measure no rows.
+   */
+  private void measureRow(CalendarRowView row, int widthMeasureSpec, int heightMeasureSpec) {
+    final ViewGroup.LayoutParams lp = row.getLayoutParams();
+    final int rowWidthSpec =
+        getChildMeasureSpec(widthMeasureSpec, getPaddingLeft() + getPaddingRight(), lp.width);
+    final int rowHeightSpec =
+        getChildMeasureSpec(heightMeasureSpec, getPaddingTop() + getPaddingBottom(), lp.height);
+    if (!row.isMeasuredWith(rowWidthSpec, rowHeightSpec)) {
+      row.measure(rowWidthSpec, rowHeightSpec);
+    }
+  }
+
+  /** Takes cell sizes from {@code metrics}, shared with other grids, from the next measure. */
+  void setGridMetrics(GridMetrics metrics) {
+    if (this.metrics != metrics) {
+      this.metrics = metrics;
+      requestLayout();
+    }
+  }
+
   @Override protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
     long start = System.currentTimeMillis();
     top = 0;
@@ -102,6 +119,48 @@ public class CalendarGridView extends ViewGroup {
       child.layout(left, top, right, top + rowHeight);
       top += rowHeight;
     }
+    computeDividers();
     Logr.d("Grid.onLayout %d ms", System.currentTimeMillis() - start);
   }
+
+  private void computeDividers() {
+    // One bottom border per row plus eight vertical borders.
+    final int maxPoints = (getChildCount() + 8) * 4;
+    if (dividers.length < maxPoints) {
+      dividers = new float[maxPoints];
+    }
+    int i = 0;
+    // A bottom border under each visible row.
+    for (int c = 0, numChildren = getChildCount(); c < numChildren; c++) {
+      final View child = getChildAt(c);
+      if (child.getVisibility() == View.VISIBLE) {
+        final int bottom = child.getBottom() - 1;
+        i = addLine(i, child.getLeft(), bottom, child.getRight(), bottom);
+      }
+    }
+
+    if (getChildCount() > 1) {
+      final ViewGroup row = (ViewGroup) getChildAt(1);
+      final int top = row.getTop();
+      final int bottom = getBottom();
+      // Left side border.
+      final int left = row.getChildAt(0).getLeft() + getLeft();
+      i = addLine(i, left, top, left, bottom);
+
+      // Each cell's right-side border.
+      for (int c = 0; c < 7; c++) {
+        final int x = left + row.getChildAt(c).getRight() - 1;
+        i = addLine(i, x, top, x, bottom);
+      }
+    }
+    dividerPointCount = i;
+  }
+
+  private int addLine(int i, float x0, float y0, float x1, float y1) {
+    dividers[i++] = x0;
+    dividers[i++] = y0;
+    dividers[i++] = x1;
+    dividers[i++] = y1;
+    return i;
+  }
 }
@@ -0,0 +1,24 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/** Builds {@link CalendarModel}s with the library's Android resources. */
+public final class CalendarModels {
+  private CalendarModels() {
+  }
+
+  /**
+   * Builds a model in the default time zone and first day of the week, labeling months with the
+   * library's month name format.
+   */
+  public static CalendarModel create(Context context, Date minDate, Date maxDate) {
+    return CalendarModel.create(minDate, maxDate, TimeZone.getDefault(),
+        Calendar.getInstance().getFirstDayOfWeek(),
+        DateFormats.forPattern(context.getString(R.string.month_name_format),
+            TimeZone.getDefault()));
+  }
+}
@@ -0,0 +1,314 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.Toast;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static com.squareup.timessquare.CalendarCells.NO_DAY;
+import static com.squareup.timessquare.CalendarCells.betweenDates;
+
+/**
+ * Calendars side by side over the same dates, such as one per resource on a dispatch screen.  The
+ * columns share one {@link CalendarModel}, so month layouts and labels are built once, and scroll
+ * as one list with a row per month.  Each column has its own selection and heatmap.  A row binds
+ * the month of every column in one pass.
+ */
+public class CalendarMultiPickerView extends ListView {
+  /** Delivers selection changes at most once per frame; see {@link #setSelectionCoalescing}. */
+  public static final long COALESCE_PER_FRAME = SelectionNotifier.PER_FRAME;
+
+  public interface OnDateSelectedListener {
+    /** The user selected {@code newDate} in {@code column}, which had {@code oldDate} or null. */
+    void onDateSelected(int column, Date oldDate, Date newDate);
+  }
+
+  private final MonthAdapter adapter;
+  private final String weekdayNamePattern;
+  /** Shared by every column's months, which are all as wide. */
+  private final GridMetrics gridMetrics = new GridMetrics();
+  final List<MonthDescriptor> months = new ArrayList<MonthDescriptor>();
+  private Column[] columns = new Column[0];
+  private CalendarModel model;
+  private WeekLayout weekLayout;
+  private DateFormat fullDateFormat;
+  private OnDateSelectedListener listener;
+  private final SelectionNotifier selectionNotifier =
+      new SelectionNotifier(this, new SelectionCallback());
+  private long maxModelBytes = MonthCells.DEFAULT_MAX_BYTES;
+
+  public CalendarMultiPickerView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    adapter = new MonthAdapter();
+    setDivider(null);
+    setDividerHeight(0);
+    setAdapter(adapter);
+    final int bg = getResources().getColor(R.color.calendar_bg);
+    setBackgroundColor(bg);
+    setCacheColorHint(bg);
+    weekdayNamePattern = context.getString(R.string.day_name_format);
+  }
+
+  /**
+   * Shows the months of {@code model} in a column per entry of {@code selectedDates}, each with
+   * its date selected, or none for null.  Time of day is ignored.
+   *
+   * @param selectedDates At least one.  Non-null dates must be between the model's min and max.
+   */
+  public void init(CalendarModel model, Date... selectedDates) {
+    if (model == null || selectedDates == null || selectedDates.length == 0) {
+      throw new IllegalArgumentException("Model and at least one column must be given.");
+    }
+    final int[] selectedDays = new int[selectedDates.length];
+    for (int c = 0; c < selectedDates.length; c++) {
+      final Date date = selectedDates[c];
+      selectedDays[c] = date == null ? NO_DAY : EpochDays.of(date, model.getTimeZone());
+      if (date != null
+          && !betweenDates(selectedDays[c], model.getMinDay(), model.getMaxDay())) {
+        throw new IllegalArgumentException(
+            "Selected dates must be between minDate and maxDate.  Column " + c + ": " + date);
+      }
+    }
+
+    this.model = model;
+    weekLayout = new WeekLayout(model.getFirstDayOfWeek(),
+        DateFormats.forPattern(weekdayNamePattern, model.getTimeZone()));
+    fullDateFormat = DateFormats.forStyle(DateFormat.MEDIUM, model.getTimeZone());
+    months.clear();
+    for (int i = 0, count = model.getMonthCount(); i < count; i++) {
+      final MonthGrid grid = model.getGrid(i);
+      months.add(new MonthDescriptor(grid.getMonth(), grid.getYear(), model.getLabel(i)));
+    }
+    final int todayDay = EpochDays.of(System.currentTimeMillis(), model.getTimeZone());
+    columns = new Column[selectedDays.length];
+    // The columns split one budget, so adding columns doesn't multiply the model's heap.
+    final long columnMaxBytes = maxModelBytes / columns.length;
+    for (int c = 0; c < columns.length; c++) {
+      columns[c] =
+          new Column(c, new CalendarCells(model, todayDay), selectedDays[c], columnMaxBytes);
+    }
+    selectionNotifier.cancel();
+    adapter.notifyDataSetChanged();
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /** Returns the date selected in {@code column}, or null if none is. */
+  public Date getSelectedDate(int column) {
+    return toDate(columns[column].selectedDay);
+  }
+
+  /** Shades the days of {@code column} with {@code heatmap}, counted from the min date. */
+  public void setHeatmap(int column, Heatmap heatmap) {
+    columns[column].heatmap = heatmap;
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      refreshColumn(column, getFirstVisiblePosition() + i);
+    }
+  }
+
+  /** Like {@link CalendarPickerView#setCellAspectRatio}, for every column. */
+  public void setCellAspectRatio(float aspectRatio) {
+    if (aspectRatio == gridMetrics.getAspectRatio()) {
+      return;
+    }
+    gridMetrics.setAspectRatio(aspectRatio);
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      final ViewGroup row = (ViewGroup) getChildAt(i);
+      for (int c = 0, numColumns = row.getChildCount(); c < numColumns; c++) {
+        ((MonthView) row.getChildAt(c)).gridMetricsChanged();
+      }
+    }
+  }
+
+  public void setOnDateSelectedListener(OnDateSelectedListener listener) {
+    this.listener = listener;
+  }
+
+  /** Like {@link CalendarPickerView#setSelectionCoalescing}, with a delivery per changed column. */
+  public void setSelectionCoalescing(long intervalMillis) {
+    selectionNotifier.setInterval(intervalMillis);
+  }
+
+  /**
+   * Like {@link CalendarRangePickerView#setMaxModelBytes}, for the model of every column together:
+   * each column gets an equal share.
+   */
+  public void setMaxModelBytes(long maxModelBytes) {
+    if (maxModelBytes <= 0) {
+      throw new IllegalArgumentException("Invalid max model bytes: " + maxModelBytes);
+    }
+    this.maxModelBytes = maxModelBytes;
+  }
+
+  /** Returns the estimated heap, in bytes, currently held by the month models of every column. */
+  public long getModelBytesEstimate() {
+    long bytes = 0;
+    for (Column column : columns) {
+      bytes += column.cells.estimateBytes();
+    }
+    return bytes;
+  }
+
+  /** Restyles {@code column} of the row at list {@code position}, if it's showing. */
+  private void refreshColumn(int column, int position) {
+    final int index = position - getFirstVisiblePosition();
+    if (position < 0 || index < 0 || index >= getChildCount()) {
+      return;
+    }
+    final MonthView monthView = (MonthView) ((ViewGroup) getChildAt(index)).getChildAt(column);
+    monthView.setHeatmap(columns[column].heatmap, model.getMinDay());
+    monthView.refreshCells();
+  }
+
+  private Date toDate(int epochDay) {
+    if (epochDay == NO_DAY) {
+      return null;
+    }
+    final Calendar cal = Calendar.getInstance(model.getTimeZone());
+    EpochDays.toCalendar(epochDay, cal);
+    return cal.getTime();
+  }
+
+  /** A column's selection, heatmap and cells, and the listener of its months' clicks. */
+  private final class Column implements MonthView.Listener, MonthCells.Builder {
+    final int index;
+    final CalendarCells calendarCells;
+    final MonthCells cells = new MonthCells(this);
+    int selectedDay;
+    /** Last selected day delivered to the {@link OnDateSelectedListener}. */
+    int deliveredDay;
+    Heatmap heatmap;
+
+    Column(int index, CalendarCells calendarCells, int selectedDay, long maxBytes) {
+      this.index = index;
+      this.calendarCells = calendarCells;
+      this.selectedDay = selectedDay;
+      deliveredDay = selectedDay;
+      cells.reset(months.size(), maxBytes);
+    }
+
+    @Override public List<List<MonthCellDescriptor>> build(int monthIndex) {
+      return calendarCells.build(model.getGrid(monthIndex), selectedDay, NO_DAY);
+    }
+
+    @Override public void handleClick(MonthCellDescriptor cell) {
+      final int day = cell.getEpochDay();
+      if (!betweenDates(day, model.getMinDay(), model.getMaxDay())) {
+        final String errMessage = getResources().getString(R.string.invalid_date,
+            fullDateFormat.format(toDate(model.getMinDay())),
+            fullDateFormat.format(toDate(model.getMaxDay() - 1)));
+        Toast.makeText(getContext(), errMessage, Toast.LENGTH_SHORT).show();
+        return;
+      }
+      if (day == selectedDay) {
+        return;
+      }
+      final int oldDay = selectedDay;
+      final int oldIndex = oldDay == NO_DAY ? -1 : model.indexOf(oldDay);
+      if (oldIndex >= 0) {
+        // The old month's cells may have been evicted, in which case they're rebuilt unselected.
+        final List<List<MonthCellDescriptor>> oldCells = cells.peek(oldIndex);
+        if (oldCells != null) {
+          final int offset = oldDay - model.getGrid(oldIndex).getFirstCellDay();
+          final MonthCellDescriptor oldCell = oldCells.get(offset / 7).get(offset % 7);
+          oldCell.setSelected(false);
+          oldCell.setRangeState(RangeState.NONE);
+        }
+      }
+      selectedDay = day;
+      cell.setSelected(true);
+      cell.setRangeState(RangeState.SINGLE);
+      final int newIndex = model.indexOf(day);
+      refreshColumn(index, oldIndex);
+      if (newIndex != oldIndex) {
+        refreshColumn(index, newIndex);
+      }
+      selectionNotifier.selectionChanged();
+    }
+  }
+
+  private class SelectionCallback implements SelectionNotifier.Callback {
+    @Override public void deliverSelection() {
+      for (Column column : columns) {
+        final int oldDay = column.deliveredDay;
+        if (column.selectedDay == oldDay) {
+          continue;
+        }
+        column.deliveredDay = column.selectedDay;
+        if (listener != null) {
+          listener.onDateSelected(column.index, toDate(oldDay), toDate(column.selectedDay));
+        }
+      }
+    }
+  }
+
+  private class MonthAdapter extends BaseAdapter {
+    private final LayoutInflater inflater;
+
+    private MonthAdapter() {
+      inflater = LayoutInflater.from(getContext());
+    }
+
+    @Override public boolean isEnabled(int position) {
+      // Disable selectability: each cell will handle that itself.
+      return false;
+    }
+
+    @Override public int getCount() {
+      return months.size();
+    }
+
+    @Override public Object getItem(int position) {
+      return months.get(position);
+    }
+
+    @Override public boolean hasStableIds() {
+      return true;
+    }
+
+    @Override public long getItemId(int position) {
+      final MonthDescriptor month = months.get(position);
+      return month.getYear() * 12L + month.getMonth();
+    }
+
+    @Override public View getView(int position, View convertView, ViewGroup parent) {
+      LinearLayout row = (LinearLayout) convertView;
+      if (row == null || row.getChildCount() != columns.length) {
+        row = new LinearLayout(getContext());
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        for (Column column : columns) {
+          final MonthView monthView =
+              MonthView.create(R.layout.month, row, inflater, weekLayout, column);
+          row.addView(monthView, new LinearLayout.LayoutParams(0,
+              ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+        }
+      }
+      final MonthDescriptor month = months.get(position);
+      for (int c = 0; c < columns.length; c++) {
+        final Column column = columns[c];
+        final MonthView monthView = (MonthView) row.getChildAt(c);
+        monthView.setListener(column);
+        monthView.setWeekLayout(weekLayout);
+        monthView.setGridMetrics(gridMetrics);
+        monthView.setAccessibilityDateFormat(fullDateFormat);
+        monthView.setHeatmap(column.heatmap, model.getMinDay());
+        monthView.init(month, column.cells.get(position));
+      }
+      return row;
+    }
+  }
+}
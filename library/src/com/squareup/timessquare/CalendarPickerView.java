@@ -2,28 +2,28 @@
 package com.squareup.timessquare;
 
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
-import static java.util.Calendar.DATE;
-import static java.util.Calendar.DAY_OF_MONTH;
-import static java.util.Calendar.DAY_OF_WEEK;
-import static java.util.Calendar.HOUR_OF_DAY;
-import static java.util.Calendar.MILLISECOND;
-import static java.util.Calendar.MINUTE;
+import static com.squareup.timessquare.CalendarCells.betweenDates;
 import static java.util.Calendar.MONTH;
-import static java.util.Calendar.SECOND;
+import static java.util.Calendar.SATURDAY;
 import static java.util.Calendar.SUNDAY;
 import static java.util.Calendar.YEAR;
 
@@ -33,20 +33,54 @@ import static java.util.Calendar.YEAR;
  * The currently selected date can be retrieved with {@link #getSelectedDate()}.
  */
 public class CalendarPickerView extends ListView {
+  /** Delivers selection changes at most once per frame; see {@link #setSelectionCoalescing}. */
+  public static final long COALESCE_PER_FRAME = SelectionNotifier.PER_FRAME;
+
+  public interface OnDateSelectedListener {
+    /** The selected date changed from {@code oldDate} to {@code newDate}. */
+    void onDateSelected(Date oldDate, Date newDate);
+  }
+
   private final CalendarPickerView.MonthAdapter adapter;
-  private final DateFormat monthNameFormat;
-  private final DateFormat weekdayNameFormat;
-  private final DateFormat fullDateFormat;
+  private final String monthNamePattern;
+  private final String weekdayNamePattern;
+  /** Shared formats from {@link DateFormats} in the current time zone; set by {@code init()}. */
+  private DateFormat weekdayNameFormat;
+  private DateFormat fullDateFormat;
   final List<MonthDescriptor> months = new ArrayList<MonthDescriptor>();
-  final List<List<List<MonthCellDescriptor>>> cells =
-      new ArrayList<List<List<MonthCellDescriptor>>>();
+  /** Bumped whenever the state of any of a month's cells changes, indexed like {@link #months}. */
+  int[] monthVersions = new int[0];
+  final MonthCells cells = new MonthCells(new MonthCellsBuilder());
+  private long maxModelBytes = MonthCells.DEFAULT_MAX_BYTES;
 
-  private MonthCellDescriptor selectedCell;
   final Calendar today = Calendar.getInstance();
   private final Calendar selectedCal = Calendar.getInstance();
   private final Calendar minCal = Calendar.getInstance();
   private final Calendar maxCal = Calendar.getInstance();
-  private final Calendar monthCounter = Calendar.getInstance();
+  private TimeZone timeZone = TimeZone.getDefault();
+  // Epoch days (see EpochDays) of the inputs, computed once per init() in timeZone.
+  private int minDay;
+  private int maxDay; // Exclusive.
+  private int todayDay;
+  private int firstDayOfWeek = today.getFirstDayOfWeek();
+  private WeekLayout weekLayout;
+  private CalendarModel model;
+  private CalendarCells calendarCells;
+  private Heatmap heatmap;
+  MonthSnapshotCache snapshotCache;
+  final OnScrollListener scrollStateListener = new ScrollStateListener();
+  private OnScrollListener clientScrollListener;
+  /** While true, months are bound without decorations; see {@link MonthView#decorate()}. */
+  private boolean flinging;
+  private ScrollMetrics scrollMetrics;
+  private CellBinder cellBinder;
+  private final GridMetrics gridMetrics = new GridMetrics();
+  final DayFocus dayFocus = new DayFocus(this);
+  private OnDateSelectedListener dateSelectedListener;
+  private final SelectionNotifier selectionNotifier =
+      new SelectionNotifier(this, new SelectionCallback());
+  /** Last selected date delivered to {@link #dateSelectedListener}. */
+  private Date deliveredDate;
 
   private final MonthView.Listener listener = new CellClickedListener();
 
@@ -56,12 +90,12 @@ public class CalendarPickerView extends ListView {
     setDivider(null);
     setDividerHeight(0);
     setAdapter(adapter);
+    super.setOnScrollListener(scrollStateListener);
     final int bg = getResources().getColor(R.color.calendar_bg);
     setBackgroundColor(bg);
     setCacheColorHint(bg);
-    monthNameFormat = new SimpleDateFormat(context.getString(R.string.month_name_format));
-    weekdayNameFormat = new SimpleDateFormat(context.getString(R.string.day_name_format));
-    fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+    monthNamePattern = context.getString(R.string.month_name_format);
+    weekdayNamePattern = context.getString(R.string.day_name_format);
   }
 
   /**
@@ -76,6 +110,18 @@ public class CalendarPickerView extends ListView {
    * @param maxDate Latest selectable date, exclusive.  Must be later than {@code minDate}.
    */
   public void init(Date selectedDate, Date minDate, Date maxDate) {
+    init(selectedDate, minDate, maxDate, TimeZone.getDefault());
+  }
+
+  /**
+   * Like {@link #init(java.util.Date, java.util.Date, java.util.Date)}, but interprets every date
+   * in {@code timeZone} rather than the device's default time zone.  Two dates are the same day if
+   * they fall on the same local date in {@code timeZone}.
+   */
+  public void init(Date selectedDate, Date minDate, Date maxDate, TimeZone timeZone) {
+    if (timeZone == null) {
+      throw new IllegalArgumentException("Time zone must be non-null.");
+    }
     if (selectedDate == null || minDate == null || maxDate == null) {
       throw new IllegalArgumentException(
           "All dates must be non-null.  " + dbg(selectedDate, minDate, maxDate));
@@ -84,57 +130,113 @@ public class CalendarPickerView extends ListView {
       throw new IllegalArgumentException(
           "All dates must be non-zero.  " + dbg(selectedDate, minDate, maxDate));
     }
-    if (minDate.after(maxDate)) {
-      throw new IllegalArgumentException(
-          "Min date must be before max date.  " + dbg(selectedDate, minDate, maxDate));
+    init(CalendarModel.create(minDate, maxDate, timeZone, firstDayOfWeek,
+        DateFormats.forPattern(monthNamePattern, timeZone)), selectedDate);
+  }
+
+  /**
+   * Shows the months of {@code model} with {@code selectedDate} selected.  The model may be shared
+   * with other pickers: this picker only adds its selection on top of it.  Its time zone and first
+   * day of the week take precedence over this picker's.
+   *
+   * @param selectedDate Must be between the model's min and max dates.
+   */
+  public void init(CalendarModel model, Date selectedDate) {
+    if (model == null || selectedDate == null) {
+      throw new IllegalArgumentException("Model and selected date must be non-null.");
     }
-    if (selectedDate.before(minDate) || selectedDate.after(maxDate)) {
+    // Time of day is ignored: everything from here on compares whole days in the model's zone.
+    final TimeZone timeZone = model.getTimeZone();
+    final int newSelectedDay = EpochDays.of(selectedDate, timeZone);
+    if (!betweenDates(newSelectedDay, model.getMinDay(), model.getMaxDay())) {
       throw new IllegalArgumentException(
-          "selectedDate must be between minDate and maxDate.  " + dbg(selectedDate, minDate,
-              maxDate));
+          "selectedDate must be between minDate and maxDate.  selectedDate: " + selectedDate);
     }
 
     // Clear previous state.
     cells.clear();
     months.clear();
 
-    // Sanitize input: clear out the hours/minutes/seconds/millis.
-    selectedCal.setTime(selectedDate);
-    minCal.setTime(minDate);
-    maxCal.setTime(maxDate);
-    setMidnight(selectedCal);
-    setMidnight(minCal);
-    setMidnight(maxCal);
-    // maxDate is exclusive: bump back to the previous day so if maxDate is the first of a month,
-    // we don't accidentally include that month in the view.
-    maxCal.add(MINUTE, -1);
-
-    // Now iterate between minCal and maxCal and build up our list of months to show.
-    monthCounter.setTime(minCal.getTime());
-    final int maxMonth = maxCal.get(MONTH);
-    final int maxYear = maxCal.get(YEAR);
-    final int selectedYear = selectedCal.get(YEAR);
-    final int selectedMonth = selectedCal.get(MONTH);
-    int selectedIndex = 0;
-    while ((monthCounter.get(MONTH) <= maxMonth // Up to, including the month.
-        || monthCounter.get(YEAR) < maxYear) // Up to the year.
-        && monthCounter.get(YEAR) < maxYear + 1) { // But not > next yr.
-      MonthDescriptor month = new MonthDescriptor(monthCounter.get(MONTH), monthCounter.get(YEAR),
-          monthNameFormat.format(monthCounter.getTime()));
-      cells.add(getMonthCells(month, monthCounter, selectedCal));
+    this.model = model;
+    setTimeZone(timeZone);
+    minDay = model.getMinDay();
+    maxDay = model.getMaxDay();
+    todayDay = EpochDays.of(today);
+    calendarCells = new CalendarCells(model, todayDay);
+    weekLayout = new WeekLayout(model.getFirstDayOfWeek(), weekdayNameFormat);
+    EpochDays.toCalendar(newSelectedDay, selectedCal);
+    EpochDays.toCalendar(minDay, minCal);
+    EpochDays.toCalendar(maxDay - 1, maxCal);
+
+    // The months themselves are shared; only their per-picker descriptors are built here.
+    for (int i = 0, count = model.getMonthCount(); i < count; i++) {
+      final MonthGrid grid = model.getGrid(i);
+      MonthDescriptor month =
+          new MonthDescriptor(grid.getMonth(), grid.getYear(), model.getLabel(i));
       Logr.d("Adding month %s", month);
-      if (selectedMonth == month.getMonth() && selectedYear == month.getYear()) {
-        selectedIndex = months.size();
-      }
       months.add(month);
-      monthCounter.add(MONTH, 1);
     }
+    cells.reset(months.size(), maxModelBytes);
+    monthVersions = new int[months.size()];
+    if (snapshotCache != null) {
+      snapshotCache.setVersions(monthVersions);
+    }
+    dayFocus.reset(model, months, monthVersions);
+    selectionNotifier.cancel();
+    deliveredDate = selectedCal.getTime();
     adapter.notifyDataSetChanged();
-    if (selectedIndex != 0) {
+    final int selectedIndex = model.indexOf(newSelectedDay);
+    if (selectedIndex > 0) {
       scrollToSelectedMonth(selectedIndex);
     }
   }
 
+  /** Listens for the user changing the selected date.  May be null. */
+  public void setOnDateSelectedListener(OnDateSelectedListener listener) {
+    dateSelectedListener = listener;
+  }
+
+  /**
+   * Coalesces selection changes so that a burst of them reaches the {@link OnDateSelectedListener}
+   * as one, with the date before the burst as the old date.
+   *
+   * @param intervalMillis 0, the default, to deliver every change at once, {@link
+   * #COALESCE_PER_FRAME}, or the least time in milliseconds between deliveries.
+   */
+  public void setSelectionCoalescing(long intervalMillis) {
+    selectionNotifier.setInterval(intervalMillis);
+  }
+
+  /**
+   * Caps the estimated heap, in bytes, of the month model built by {@code init()}.  Ranges whose
+   * months fit are built up front; longer ones build each month's cells when it's shown and keep
+   * only the most recently shown.  Defaults to 1 MB.  Takes effect on the next call to
+   * {@code init()}.
+   */
+  public void setMaxModelBytes(long maxModelBytes) {
+    if (maxModelBytes <= 0) {
+      throw new IllegalArgumentException("Invalid max model bytes: " + maxModelBytes);
+    }
+    this.maxModelBytes = maxModelBytes;
+  }
+
+  /**
+   * Shades days by {@code heatmap}, whose counts are indexed by offset from the min date passed to
+   * {@code init()}.  Null removes the shading.  The heatmap is bucketed when it's built, so
+   * binding a cell only reads its color.
+   */
+  public void setHeatmap(Heatmap heatmap) {
+    this.heatmap = heatmap;
+    if (!months.isEmpty()) {
+      refreshMonths(0, months.size() - 1);
+    }
+  }
+
+  /** Returns the estimated heap, in bytes, currently held by the month model. */
+  public long getModelBytesEstimate() {
+    return cells.estimateBytes();
+  }
+
   private void scrollToSelectedMonth(final int selectedIndex) {
     post(new Runnable() {
       @Override public void run() {
@@ -143,6 +245,115 @@ public class CalendarPickerView extends ListView {
     });
   }
 
+  /**
+   * Opt-in: while the list scrolls, draw each month from a bitmap snapshot of its grid taken the
+   * first time it's drawn, so months scrolling back in are blitted instead of redrawn.  Snapshots
+   * are invalidated when their month's selection changes and evicted, least recently used first,
+   * beyond an eighth of the heap.
+   */
+  public void setSnapshotCachingEnabled(boolean enabled) {
+    if (enabled == (snapshotCache != null)) {
+      return;
+    }
+    snapshotCache = enabled ? new MonthSnapshotCache() : null;
+    if (snapshotCache != null) {
+      snapshotCache.setVersions(monthVersions);
+    }
+    final int firstPosition = getFirstVisiblePosition();
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      ((MonthView) getChildAt(i)).setSnapshotCache(snapshotCache, firstPosition + i);
+    }
+  }
+
+  /**
+   * Binds day cells with {@code binder} instead of the stock cells, or with the stock cells again
+   * for null.  Cells keep being recycled with the months that show them.
+   */
+  public void setCellBinder(CellBinder binder) {
+    if (cellBinder == binder) {
+      return;
+    }
+    cellBinder = binder;
+    if (snapshotCache != null) {
+      snapshotCache.clear();
+    }
+    adapter.notifyDataSetChanged();
+  }
+
+  /**
+   * Sets the width over the height of every day cell, or 0, the default, for the month layout's
+   * {@code cellAspectRatio}.  Cell sizes are computed once per width for all months.
+   */
+  public void setCellAspectRatio(float aspectRatio) {
+    if (aspectRatio == gridMetrics.getAspectRatio()) {
+      return;
+    }
+    gridMetrics.setAspectRatio(aspectRatio);
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      ((MonthView) getChildAt(i)).gridMetricsChanged();
+    }
+  }
+
+  /** Records scroll smoothness into {@code metrics} from now on.  Null, the default, to stop. */
+  public void setScrollMetrics(ScrollMetrics metrics) {
+    if (scrollMetrics != null) {
+      scrollMetrics.setScrolling(false);
+    }
+    scrollMetrics = metrics;
+  }
+
+  public ScrollMetrics getScrollMetrics() {
+    return scrollMetrics;
+  }
+
+  @Override protected void dispatchDraw(Canvas canvas) {
+    super.dispatchDraw(canvas);
+    if (scrollMetrics != null) {
+      scrollMetrics.frameDrawn(System.nanoTime());
+    }
+  }
+
+  @Override public void setOnScrollListener(OnScrollListener listener) {
+    // We need scroll state changes ourselves; forward them instead of being replaced.
+    clientScrollListener = listener;
+  }
+
+  private class ScrollStateListener implements OnScrollListener {
+    @Override public void onScrollStateChanged(AbsListView view, int scrollState) {
+      if (scrollMetrics != null) {
+        scrollMetrics.setScrolling(scrollState != SCROLL_STATE_IDLE);
+      }
+      final boolean wasFlinging = flinging;
+      flinging = scrollState == SCROLL_STATE_FLING;
+      if (wasFlinging && !flinging) {
+        // Months bound mid-fling got only day numbers and selection; finish the visible ones.
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+          ((MonthView) getChildAt(i)).decorate();
+        }
+      }
+      if (snapshotCache != null) {
+        final boolean scrolling = scrollState != SCROLL_STATE_IDLE;
+        snapshotCache.setScrolling(scrolling);
+        if (!scrolling) {
+          // Back to live drawing so cells can show pressed and focused states.
+          for (int i = 0, count = getChildCount(); i < count; i++) {
+            getChildAt(i).invalidate();
+          }
+        }
+      }
+      if (clientScrollListener != null) {
+        clientScrollListener.onScrollStateChanged(view, scrollState);
+      }
+    }
+
+    @Override public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+        int totalItemCount) {
+      if (clientScrollListener != null) {
+        clientScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+      }
+    }
+  }
+
   @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
     if (months.isEmpty()) {
       throw new IllegalStateException(
@@ -155,40 +366,170 @@ public class CalendarPickerView extends ListView {
     return selectedCal.getTime();
   }
 
+  private void setTimeZone(TimeZone timeZone) {
+    this.timeZone = timeZone;
+    today.setTimeZone(timeZone);
+    selectedCal.setTimeZone(timeZone);
+    minCal.setTimeZone(timeZone);
+    maxCal.setTimeZone(timeZone);
+    weekdayNameFormat = DateFormats.forPattern(weekdayNamePattern, timeZone);
+    fullDateFormat = DateFormats.forStyle(DateFormat.MEDIUM, timeZone);
+  }
+
+  /**
+   * Sets the day shown in the first column of every month, {@link Calendar#SUNDAY} through {@link
+   * Calendar#SATURDAY}.  Defaults to the first day of the week of the default locale.  Takes effect
+   * on the next call to {@code init()}.
+   */
+  public void setFirstDayOfWeek(int firstDayOfWeek) {
+    if (firstDayOfWeek < SUNDAY || firstDayOfWeek > SATURDAY) {
+      throw new IllegalArgumentException("Invalid first day of week: " + firstDayOfWeek);
+    }
+    this.firstDayOfWeek = firstDayOfWeek;
+  }
+
   /** Returns a string summarizing what the client sent us for init() params. */
   private static String dbg(Date startDate, Date minDate, Date maxDate) {
     return "startDate: " + startDate + "\nminDate: " + minDate + "\nmaxDate: " + maxDate;
   }
 
-  /** Clears out the hours/minutes/seconds/millis of a Calendar. */
-  private static void setMidnight(Calendar cal) {
-    cal.set(HOUR_OF_DAY, 0);
-    cal.set(MINUTE, 0);
-    cal.set(SECOND, 0);
-    cal.set(MILLISECOND, 0);
+  /**
+   * Jumps to {@code month} ({@link Calendar#MONTH}) of {@code year}, e.g. when it's picked from a
+   * {@link CalendarYearView}.  Returns false, and does nothing, if that month isn't displayed.
+   */
+  public boolean scrollToMonth(int year, int month) {
+    if (months.isEmpty()) {
+      return false;
+    }
+    final MonthDescriptor first = months.get(0);
+    final int index = (year - first.getYear()) * 12 + month - first.getMonth();
+    if (index < 0 || index >= months.size()) {
+      return false;
+    }
+    setSelection(index);
+    return true;
+  }
+
+  /**
+   * Marks the months at positions {@code from} through {@code to} as changed and restyles the
+   * on-screen ones in place.  Months off screen pick up the change when the adapter next binds
+   * them, so there is no need for a {@code notifyDataSetChanged()} that would rebind and re-layout
+   * every visible month.
+   */
+  private void refreshMonths(int from, int to) {
+    for (int i = Math.max(from, 0), last = Math.min(to, months.size() - 1); i <= last; i++) {
+      monthVersions[i]++;
+    }
+    final int firstPosition = getFirstVisiblePosition();
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      final int position = firstPosition + i;
+      if (position >= from && position <= to) {
+        final MonthView monthView = (MonthView) getChildAt(i);
+        monthView.setHeatmap(heatmap, minDay);
+        monthView.refreshCells();
+      }
+    }
+  }
+
+  @Override public boolean onKeyDown(int keyCode, KeyEvent event) {
+    // Arrow keys move focus between days; the list's own handling would only scroll it.
+    final int offset = DayFocus.offsetFor(keyCode);
+    if (offset != 0 && !months.isEmpty()) {
+      final boolean moved = dayFocus.getDay() == DayFocus.NO_DAY
+          ? dayFocus.focus(initialFocusDay()) : dayFocus.moveBy(offset);
+      if (moved) {
+        return true;
+      }
+    } else if ((keyCode == KeyEvent.KEYCODE_DPAD_CENTER || keyCode == KeyEvent.KEYCODE_ENTER)
+        && dayFocus.getDay() != DayFocus.NO_DAY) {
+      listener.handleClick(cellFor(dayFocus.getDay()));
+      return true;
+    }
+    return super.onKeyDown(keyCode, event);
+  }
+
+  @Override protected void onFocusChanged(boolean gainFocus, int direction, Rect previous) {
+    super.onFocusChanged(gainFocus, direction, previous);
+    if (!gainFocus) {
+      dayFocus.clear();
+    }
+  }
+
+  /**
+   * The day the arrow keys focus first: the selected day if its month is on screen, otherwise
+   * the first day of the first month shown.
+   */
+  private int initialFocusDay() {
+    final int selected = EpochDays.of(selectedCal);
+    final int index = model.indexOf(selected);
+    if (index >= getFirstVisiblePosition() && index <= getLastVisiblePosition()) {
+      return selected;
+    }
+    return model.getGrid(getFirstVisiblePosition()).getFirstDay();
+  }
+
+  /** Returns the descriptor for {@code day}, building its month's cells if they aren't resident. */
+  private MonthCellDescriptor cellFor(int day) {
+    final List<List<MonthCellDescriptor>> monthCells = cells.get(model.indexOf(day));
+    final int offset = day - monthCells.get(0).get(0).getEpochDay();
+    return monthCells.get(offset / 7).get(offset % 7);
   }
 
   private class CellClickedListener implements MonthView.Listener {
     @Override public void handleClick(MonthCellDescriptor cell) {
-      if (!betweenDates(cell.getDate(), minCal, maxCal)) {
+      if (!betweenDates(cell.getEpochDay(), minDay, maxDay)) {
         String errMessage =
             getResources().getString(R.string.invalid_date, fullDateFormat.format(minCal.getTime()),
                 fullDateFormat.format(maxCal.getTime()));
         Toast.makeText(getContext(), errMessage, Toast.LENGTH_SHORT).show();
       } else {
-        // De-select the currently-selected cell.
-        selectedCell.setSelected(false);
+        final int oldDay = EpochDays.of(selectedCal);
+        final int oldIndex = model.indexOf(oldDay);
+        final int newIndex = model.indexOf(cell.getEpochDay());
+        // De-select the currently-selected cell.  Its month's cells may not be built, or may have
+        // been evicted, in which case they're built unselected.
+        final List<List<MonthCellDescriptor>> oldCells = cells.peek(oldIndex);
+        if (oldCells != null) {
+          final int offset = oldDay - model.getGrid(oldIndex).getFirstCellDay();
+          final MonthCellDescriptor oldCell = oldCells.get(offset / 7).get(offset % 7);
+          oldCell.setSelected(false);
+          oldCell.setRangeState(RangeState.NONE);
+        }
         // Select the new cell.
-        selectedCell = cell;
-        selectedCell.setSelected(true);
+        cell.setSelected(true);
+        cell.setRangeState(RangeState.SINGLE);
         // Track the currently selected date value.
         selectedCal.setTime(cell.getDate());
-        // Update the adapter.
-        adapter.notifyDataSetChanged();
+        // Update the affected months.
+        refreshMonths(oldIndex, oldIndex);
+        if (newIndex != oldIndex) {
+          refreshMonths(newIndex, newIndex);
+        }
+        selectionNotifier.selectionChanged();
       }
     }
   }
 
+  private class SelectionCallback implements SelectionNotifier.Callback {
+    @Override public void deliverSelection() {
+      final Date newDate = selectedCal.getTime();
+      if (newDate.equals(deliveredDate)) {
+        return;
+      }
+      final Date oldDate = deliveredDate;
+      deliveredDate = newDate;
+      if (dateSelectedListener != null) {
+        dateSelectedListener.onDateSelected(oldDate, newDate);
+      }
+    }
+  }
+
+  private class MonthCellsBuilder implements MonthCells.Builder {
+    @Override public List<List<MonthCellDescriptor>> build(int index) {
+      return getMonthCells(model.getGrid(index), EpochDays.of(selectedCal));
+    }
+  }
+
   private class MonthAdapter extends BaseAdapter {
     private final LayoutInflater inflater;
 
@@ -209,66 +550,45 @@ public class CalendarPickerView extends ListView {
       return months.get(position);
     }
 
+    @Override public boolean hasStableIds() {
+      return true;
+    }
+
     @Override public long getItemId(int position) {
-      return position;
+      final MonthDescriptor month = months.get(position);
+      return month.getYear() * 12L + month.getMonth();
     }
 
     @Override public View getView(int position, View convertView, ViewGroup parent) {
+      final long bindStart = scrollMetrics != null ? System.nanoTime() : 0;
       MonthView monthView = (MonthView) convertView;
       if (monthView == null) {
-        monthView = MonthView.create(parent, inflater, weekdayNameFormat, listener, today);
+        monthView = MonthView.create(R.layout.month, parent, inflater, weekLayout, listener);
+      }
+      monthView.setWeekLayout(weekLayout);
+      monthView.setSnapshotCache(snapshotCache, position);
+      monthView.setCellBinder(cellBinder);
+      monthView.setGridMetrics(gridMetrics);
+      monthView.setAccessibilityDateFormat(fullDateFormat);
+      monthView.setHeatmap(heatmap, minDay);
+      monthView.init(months.get(position), cells.get(position), !flinging);
+      dayFocus.bind(monthView, position);
+      if (scrollMetrics != null) {
+        scrollMetrics.bindFinished(System.nanoTime() - bindStart);
       }
-      monthView.init(months.get(position), cells.get(position));
       return monthView;
     }
   }
 
   List<List<MonthCellDescriptor>> getMonthCells(MonthDescriptor month, Calendar startCal,
       Calendar selectedDate) {
-    Calendar cal = Calendar.getInstance();
-    cal.setTime(startCal.getTime());
-    List<List<MonthCellDescriptor>> cells = new ArrayList<List<MonthCellDescriptor>>();
-    cal.set(DAY_OF_MONTH, 1);
-    int firstDayOfWeek = cal.get(DAY_OF_WEEK);
-    cal.add(DATE, SUNDAY - firstDayOfWeek);
-    while ((cal.get(MONTH) < month.getMonth() + 1 || cal.get(YEAR) < month.getYear()) //
-        && cal.get(YEAR) <= month.getYear()) {
-      Logr.d("Building week row starting at %s", cal.getTime());
-      List<MonthCellDescriptor> weekCells = new ArrayList<MonthCellDescriptor>();
-      cells.add(weekCells);
-      for (int c = 0; c < 7; c++) {
-        Date date = cal.getTime();
-        boolean isCurrentMonth = cal.get(MONTH) == month.getMonth();
-        boolean isSelected = isCurrentMonth && sameDate(cal, selectedDate);
-        boolean isSelectable = isCurrentMonth && betweenDates(cal, minCal, maxCal);
-        boolean isToday = sameDate(cal, today);
-        int value = cal.get(DAY_OF_MONTH);
-        MonthCellDescriptor cell =
-            new MonthCellDescriptor(date, isCurrentMonth, isSelectable, isSelected, isToday, value);
-        if (isSelected) {
-          selectedCell = cell;
-        }
-        weekCells.add(cell);
-        cal.add(DATE, 1);
-      }
-    }
-    return cells;
-  }
-
-  private static boolean sameDate(Calendar cal, Calendar selectedDate) {
-    return cal.get(MONTH) == selectedDate.get(MONTH)
-        && cal.get(YEAR) == selectedDate.get(YEAR)
-        && cal.get(DAY_OF_MONTH) == selectedDate.get(DAY_OF_MONTH);
-  }
-
-  private static boolean betweenDates(Calendar cal, Calendar minCal, Calendar maxCal) {
-    final Date date = cal.getTime();
-    return betweenDates(date, minCal, maxCal);
+    final MonthGrid grid = MonthGridCache.get(startCal.get(YEAR), startCal.get(MONTH),
+        weekLayout.getFirstDayOfWeek());
+    return getMonthCells(grid, EpochDays.of(selectedDate));
   }
 
-  static boolean betweenDates(Date date, Calendar minCal, Calendar maxCal) {
-    final Date min = minCal.getTime();
-    return (date.equals(min) || date.after(min)) // >= minCal
-        && date.before(maxCal.getTime()); // && < maxCal
+  /** Builds this picker's descriptors for {@code grid}, with {@code selected} the selected day. */
+  private List<List<MonthCellDescriptor>> getMonthCells(MonthGrid grid, int selected) {
+    return calendarCells.build(grid, selected, CalendarCells.NO_DAY);
   }
 }
@@ -1,28 +1,32 @@
 package com.squareup.timessquare;
 
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.Toast;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
 import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.TimeZone;
 
-import static java.util.Calendar.DATE;
-import static java.util.Calendar.DAY_OF_MONTH;
-import static java.util.Calendar.DAY_OF_WEEK;
-import static java.util.Calendar.HOUR_OF_DAY;
-import static java.util.Calendar.MILLISECOND;
-import static java.util.Calendar.MINUTE;
+import static com.squareup.timessquare.CalendarCells.betweenDates;
+import static com.squareup.timessquare.CalendarCells.inSelection;
+import static com.squareup.timessquare.CalendarCells.rangeState;
 import static java.util.Calendar.MONTH;
-import static java.util.Calendar.SECOND;
+import static java.util.Calendar.SATURDAY;
 import static java.util.Calendar.SUNDAY;
 import static java.util.Calendar.YEAR;
 
@@ -34,37 +38,96 @@ import static java.util.Calendar.YEAR;
 public class CalendarRangePickerView extends ListView
     implements MonthView.Listener {
 
+  /** Delivers selection changes at most once per frame; see {@link #setSelectionCoalescing}. */
+  public static final long COALESCE_PER_FRAME = SelectionNotifier.PER_FRAME;
+
   public interface Listener {
     void onRangeStarted();
     void onRangeCompleted();
   }
 
+  public interface OnRangeSelectedListener {
+    /**
+     * The selection changed from {@code oldStart} through {@code oldEnd} to {@code newStart}
+     * through {@code newEnd}.  Starts are null for no selection, and ends for a started range.
+     */
+    void onRangeSelected(Date oldStart, Date oldEnd, Date newStart, Date newEnd);
+  }
+
+  /** Marks an unset selection bound. */
+  private static final int NO_DAY = CalendarCells.NO_DAY;
+
   private Listener listener;
   private final CalendarRangePickerView.MonthAdapter adapter;
-  private final DateFormat monthNameFormat;
-  private final DateFormat weekdayNameFormat;
-  private final DateFormat fullDateFormat;
+  private final String monthNamePattern;
+  private final String weekdayNamePattern;
+  /** Shared formats from {@link DateFormats} in the current time zone; set by {@code init()}. */
+  private DateFormat weekdayNameFormat;
+  private DateFormat fullDateFormat;
   final List<MonthDescriptor> months = new ArrayList<MonthDescriptor>();
-  final List<List<List<MonthCellDescriptor>>> cells =
-      new ArrayList<List<List<MonthCellDescriptor>>>();
+  /** Bumped whenever the state of any of a month's cells changes, indexed like {@link #months}. */
+  int[] monthVersions = new int[0];
+  final MonthCells cells = new MonthCells(new MonthCellsBuilder());
+  private long maxModelBytes = MonthCells.DEFAULT_MAX_BYTES;
 
-  private List<MonthCellDescriptor> selectedCells = new ArrayList<MonthCellDescriptor>();
   final Calendar today = Calendar.getInstance();
   private final Calendar selectedStartCal = Calendar.getInstance();
   private final Calendar selectedEndCal = Calendar.getInstance();
   private final Calendar minCal = Calendar.getInstance();
   private final Calendar maxCal = Calendar.getInstance();
+  private final Calendar monthCounter = Calendar.getInstance();
+  private TimeZone timeZone = TimeZone.getDefault();
+  // Epoch days (see EpochDays) of the inputs, computed once per input in timeZone.
+  private int selectedStartDay = NO_DAY;
+  private int selectedEndDay = NO_DAY;
+  private int minDay;
+  private int maxDay; // Exclusive.
+  private int todayDay;
+  private int firstDayOfWeek = today.getFirstDayOfWeek();
+  private WeekLayout weekLayout;
+  private CalendarModel model;
+  private CalendarCells calendarCells;
+  private Heatmap heatmap;
+  private MonthSnapshotCache snapshotCache;
+  private OnScrollListener clientScrollListener;
+  /** While true, months are bound without decorations; see {@link MonthView#decorate()}. */
+  private boolean flinging;
+  private ScrollMetrics scrollMetrics;
+  private CellBinder cellBinder;
+  private final GridMetrics gridMetrics = new GridMetrics();
+  private int minNights;
+  private int maxNights = Integer.MAX_VALUE;
+
+  // Drag selection: a long press on a day anchors a range, dragging previews its other end.
+  private final int touchSlop;
+  private final int longPressTimeout;
+  private final Runnable startDrag = new StartDragRunnable();
+  private final DayFocus dayFocus = new DayFocus(this);
+  private OnRangeSelectedListener rangeSelectedListener;
+  private final SelectionNotifier selectionNotifier =
+      new SelectionNotifier(this, new SelectionCallback());
+  /** Last selection delivered to {@link #rangeSelectedListener}. */
+  private Date deliveredStart;
+  private Date deliveredEnd;
+  private float downX;
+  private float downY;
+  private boolean dragging;
+  private int dragAnchorDay;
+  private int previewStartDay;
+  private int previewEndDay;
 
   public CalendarRangePickerView(Context context, AttributeSet attrs) {
     super(context, attrs);
     adapter = new MonthAdapter();
     setAdapter(adapter);
+    super.setOnScrollListener(new ScrollStateListener());
     final int bg = getResources().getColor(R.color.calendar_bg);
     setBackgroundColor(bg);
     setCacheColorHint(bg);
-    monthNameFormat = new SimpleDateFormat(context.getString(R.string.month_name_format));
-    weekdayNameFormat = new SimpleDateFormat(context.getString(R.string.day_name_format));
-    fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+    monthNamePattern = context.getString(R.string.month_name_format);
+    weekdayNamePattern = context.getString(R.string.day_name_format);
+    touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    longPressTimeout = ViewConfiguration.getLongPressTimeout();
   }
 
   protected int getMonthResourceId() {
@@ -89,84 +152,334 @@ public class CalendarRangePickerView extends ListView
    * @param maxDate Latest selectable date, exclusive.  Must be later than {@code minDate}.
    */
   public void init(Date selectedStartDate, Date selectedEndDate, Date minDate, Date maxDate) {
+    init(selectedStartDate, selectedEndDate, minDate, maxDate, TimeZone.getDefault());
+  }
+
+  /**
+   * Like {@link #init(java.util.Date, java.util.Date, java.util.Date, java.util.Date)}, but
+   * interprets every date in {@code timeZone} rather than the device's default time zone.
+   */
+  public void init(Date selectedStartDate, Date selectedEndDate, Date minDate, Date maxDate,
+      TimeZone timeZone) {
+    if (timeZone == null) {
+      throw new IllegalArgumentException("Time zone must be non-null");
+    }
     if (minDate == null || maxDate == null) {
       throw new IllegalArgumentException("Min/max dates must be non-null");
     }
     if (minDate.getTime() == 0 || maxDate.getTime() == 0) {
       throw new IllegalArgumentException("Min/max dates must be non-zero");
     }
-    if (minDate.after(maxDate)) {
-      throw new IllegalArgumentException("Min date must be before max date");
+    init(CalendarModel.create(minDate, maxDate, timeZone, firstDayOfWeek,
+        DateFormats.forPattern(monthNamePattern, timeZone)), selectedStartDate, selectedEndDate);
+  }
+
+  /**
+   * Shows the months of {@code model} with the given range selected.  The model may be shared with
+   * other pickers: this picker only adds its selection on top of it.  Its time zone and first day
+   * of the week take precedence over this picker's.
+   *
+   * @param selectedStartDate Earliest initially selected date, inclusive, or null.
+   * @param selectedEndDate Latest initially selected date, inclusive, or null.
+   */
+  public void init(CalendarModel model, Date selectedStartDate, Date selectedEndDate) {
+    if (model == null) {
+      throw new IllegalArgumentException("Model must be non-null");
     }
 
     // Clear previous state.
     cells.clear();
     months.clear();
 
-    // Sanitize input: clear out the hours/minutes/seconds/millis.
-    minCal.setTime(minDate);
-    maxCal.setTime(maxDate);
-    setMidnight(minCal);
-    setMidnight(maxCal);
-    // maxDate is exclusive: bump back to the previous day so if maxDate is the first of a month,
-    // we don't accidentally include that month in the view.
-    maxCal.add(MINUTE, -1);
+    this.model = model;
+    setTimeZone(model.getTimeZone());
+    minDay = model.getMinDay();
+    maxDay = model.getMaxDay();
+    todayDay = EpochDays.of(today);
+    calendarCells = new CalendarCells(model, todayDay) {
+      @Override protected MonthCellDescriptor createDescriptor(Date date, boolean currentMonth,
+          boolean selectable, boolean selected, boolean today, int value) {
+        return CalendarRangePickerView.this.createDescriptor(date, currentMonth, selectable,
+            selected, today, value);
+      }
+    };
+    weekLayout = new WeekLayout(model.getFirstDayOfWeek(), weekdayNameFormat);
 
-    // Validate initial range.  Validation must happen after we set minCal/maxCal
-    validateRange(selectedStartDate, selectedEndDate);
+    // Validate initial range.  Validation must happen after we set minDay/maxDay
+    final int startDay = toDay(selectedStartDate);
+    final int endDay = toDay(selectedEndDate);
+    validateRange(startDay, endDay);
+    selectedStartDay = startDay;
+    selectedEndDay = endDay;
 
-    if (selectedStartDate == null) {
+    EpochDays.toCalendar(minDay, minCal);
+    EpochDays.toCalendar(maxDay - 1, maxCal);
+
+    if (startDay == NO_DAY) {
       selectedStartCal.setTimeInMillis(0);
     } else {
-      selectedStartCal.setTime(selectedStartDate);
-      setMidnight(selectedStartCal);
+      EpochDays.toCalendar(startDay, selectedStartCal);
     }
 
-    if (selectedEndDate == null) {
+    if (endDay == NO_DAY) {
       selectedEndCal.setTimeInMillis(0);
     } else {
-      selectedEndCal.setTime(selectedEndDate);
-      setMidnight(selectedEndCal);
-    }
-
-    // Now iterate between minCal and maxCal and build up our list of months to show.
-    final Calendar monthCounter = Calendar.getInstance();
-
-    monthCounter.setTime(minCal.getTime());
-    final int maxMonth = maxCal.get(MONTH);
-    final int maxYear = maxCal.get(YEAR);
-    while ((monthCounter.get(MONTH) <= maxMonth // Up to, including the month.
-        || monthCounter.get(YEAR) < maxYear) // Up to the year.
-        && monthCounter.get(YEAR) < maxYear + 1) { // But not > next yr.
-      MonthDescriptor month = new MonthDescriptor(monthCounter.get(MONTH), monthCounter.get(YEAR),
-          monthNameFormat.format(monthCounter.getTime()));
-      cells.add(getMonthCells(month, monthCounter, selectedStartCal, selectedEndCal));
+      EpochDays.toCalendar(endDay, selectedEndCal);
+    }
+
+    // The months themselves are shared; only their per-picker descriptors are built here.
+    for (int i = 0, count = model.getMonthCount(); i < count; i++) {
+      final MonthGrid grid = model.getGrid(i);
+      MonthDescriptor month =
+          new MonthDescriptor(grid.getMonth(), grid.getYear(), model.getLabel(i));
       Logr.d("Adding month %s", month);
       months.add(month);
-      monthCounter.add(MONTH, 1);
     }
+    cells.reset(months.size(), maxModelBytes);
+    monthVersions = new int[months.size()];
+    if (snapshotCache != null) {
+      snapshotCache.setVersions(monthVersions);
+    }
+    dayFocus.reset(model, months, monthVersions);
+    selectionNotifier.cancel();
+    deliveredStart = getSelectedStartDate();
+    deliveredEnd = getSelectedEndDate();
     adapter.notifyDataSetChanged();
   }
 
+  /**
+   * Called synchronously as soon as a range is started or completed.  See also {@link
+   * #setOnRangeSelectedListener}.
+   */
   public void setListener(Listener listener) {
     this.listener = listener;
   }
 
-  private void validateRange(Date startDate, Date endDate) {
-    if ((startDate == null) && (endDate != null)) {
+  /** Listens for the selected range changing, with its old and new bounds.  May be null. */
+  public void setOnRangeSelectedListener(OnRangeSelectedListener listener) {
+    rangeSelectedListener = listener;
+  }
+
+  /**
+   * Coalesces selection changes so that a burst of them reaches the {@link
+   * OnRangeSelectedListener} as one, with the range before the burst as the old range.  The
+   * {@link Listener} is still called for every change.
+   *
+   * @param intervalMillis 0, the default, to deliver every change at once, {@link
+   * #COALESCE_PER_FRAME}, or the least time in milliseconds between deliveries.
+   */
+  public void setSelectionCoalescing(long intervalMillis) {
+    selectionNotifier.setInterval(intervalMillis);
+  }
+
+  private void setTimeZone(TimeZone timeZone) {
+    this.timeZone = timeZone;
+    today.setTimeZone(timeZone);
+    selectedStartCal.setTimeZone(timeZone);
+    selectedEndCal.setTimeZone(timeZone);
+    minCal.setTimeZone(timeZone);
+    maxCal.setTimeZone(timeZone);
+    monthCounter.setTimeZone(timeZone);
+    weekdayNameFormat = DateFormats.forPattern(weekdayNamePattern, timeZone);
+    fullDateFormat = DateFormats.forStyle(DateFormat.MEDIUM, timeZone);
+  }
+
+  /**
+   * Sets the day shown in the first column of every month, {@link Calendar#SUNDAY} through {@link
+   * Calendar#SATURDAY}.  Defaults to the first day of the week of the default locale.  Takes effect
+   * on the next call to {@code init()}.
+   */
+  public void setFirstDayOfWeek(int firstDayOfWeek) {
+    if (firstDayOfWeek < SUNDAY || firstDayOfWeek > SATURDAY) {
+      throw new IllegalArgumentException("Invalid first day of week: " + firstDayOfWeek);
+    }
+    this.firstDayOfWeek = firstDayOfWeek;
+  }
+
+  /**
+   * Limits the length of a completed range, in nights: the number of days from its start to its
+   * end.  Defaults to no limits.  Ranges passed to {@code init()} must respect the limits.
+   *
+   * @param minNights Minimum nights, at least 0.
+   * @param maxNights Maximum nights, at least {@code minNights}.
+   */
+  public void setNightsRange(int minNights, int maxNights) {
+    if (minNights < 0 || maxNights < minNights) {
+      throw new IllegalArgumentException(
+          "Invalid nights range: " + minNights + " to " + maxNights);
+    }
+    this.minNights = minNights;
+    this.maxNights = maxNights;
+  }
+
+  private boolean allowedNights(int nights) {
+    return nights >= minNights && nights <= maxNights;
+  }
+
+  /**
+   * Caps the estimated heap, in bytes, of the month model built by {@code init()}.  Ranges whose
+   * months fit are built up front; longer ones build each month's cells when it's shown and keep
+   * only the most recently shown.  Defaults to 1 MB.  Takes effect on the next call to
+   * {@code init()}.
+   */
+  public void setMaxModelBytes(long maxModelBytes) {
+    if (maxModelBytes <= 0) {
+      throw new IllegalArgumentException("Invalid max model bytes: " + maxModelBytes);
+    }
+    this.maxModelBytes = maxModelBytes;
+  }
+
+  /**
+   * Shades days by {@code heatmap}, whose counts are indexed by offset from the min date passed to
+   * {@code init()}.  Null removes the shading.  The heatmap is bucketed when it's built, so
+   * binding a cell only reads its color.
+   */
+  public void setHeatmap(Heatmap heatmap) {
+    this.heatmap = heatmap;
+    if (!months.isEmpty()) {
+      refreshMonths(0, months.size() - 1);
+    }
+  }
+
+  /** Returns the estimated heap, in bytes, currently held by the month model. */
+  public long getModelBytesEstimate() {
+    return cells.estimateBytes();
+  }
+
+  /** Returns the epoch day of {@code date} in our time zone, or {@link #NO_DAY} if it's null. */
+  private int toDay(Date date) {
+    return date == null ? NO_DAY : EpochDays.of(date, timeZone);
+  }
+
+  private void validateRange(int startDay, int endDay) {
+    if (startDay == NO_DAY && endDay != NO_DAY) {
       throw new IllegalArgumentException("No end date without a start date");
     }
 
-    if (startDate != null && !betweenDates(startDate, minCal, maxCal)) {
+    if (startDay != NO_DAY && !betweenDates(startDay, minDay, maxDay)) {
       throw new IllegalArgumentException("Start date out of range");
     }
-    if (endDate != null && !betweenDates(endDate, minCal, maxCal)) {
+    if (endDay != NO_DAY && !betweenDates(endDay, minDay, maxDay)) {
       throw new IllegalArgumentException("End date out of range");
     }
 
-    if (endDate != null && startDate.after(endDate)) {
+    if (endDay != NO_DAY && startDay > endDay) {
       throw new IllegalArgumentException("Start date must be before end date");
     }
+
+    if (endDay != NO_DAY && !allowedNights(endDay - startDay)) {
+      throw new IllegalArgumentException(
+          "Range must be between " + minNights + " and " + maxNights + " nights");
+    }
+  }
+
+  /**
+   * Opt-in: while the list scrolls, draw each month from a bitmap snapshot of its grid taken the
+   * first time it's drawn, so months scrolling back in are blitted instead of redrawn.  Snapshots
+   * are invalidated when their month's selection changes and evicted, least recently used first,
+   * beyond an eighth of the heap.
+   */
+  public void setSnapshotCachingEnabled(boolean enabled) {
+    if (enabled == (snapshotCache != null)) {
+      return;
+    }
+    snapshotCache = enabled ? new MonthSnapshotCache() : null;
+    if (snapshotCache != null) {
+      snapshotCache.setVersions(monthVersions);
+    }
+    final int firstPosition = getFirstVisiblePosition();
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      ((MonthView) getChildAt(i)).setSnapshotCache(snapshotCache, firstPosition + i);
+    }
+  }
+
+  /**
+   * Binds day cells with {@code binder} instead of the stock cells, or with the stock cells again
+   * for null.  Cells keep being recycled with the months that show them.
+   */
+  public void setCellBinder(CellBinder binder) {
+    if (cellBinder == binder) {
+      return;
+    }
+    cellBinder = binder;
+    if (snapshotCache != null) {
+      snapshotCache.clear();
+    }
+    adapter.notifyDataSetChanged();
+  }
+
+  /**
+   * Sets the width over the height of every day cell, or 0, the default, for the month layout's
+   * {@code cellAspectRatio}.  Cell sizes are computed once per width for all months.
+   */
+  public void setCellAspectRatio(float aspectRatio) {
+    if (aspectRatio == gridMetrics.getAspectRatio()) {
+      return;
+    }
+    gridMetrics.setAspectRatio(aspectRatio);
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      ((MonthView) getChildAt(i)).gridMetricsChanged();
+    }
+  }
+
+  /** Records scroll smoothness into {@code metrics} from now on.  Null, the default, to stop. */
+  public void setScrollMetrics(ScrollMetrics metrics) {
+    if (scrollMetrics != null) {
+      scrollMetrics.setScrolling(false);
+    }
+    scrollMetrics = metrics;
+  }
+
+  public ScrollMetrics getScrollMetrics() {
+    return scrollMetrics;
+  }
+
+  @Override protected void dispatchDraw(Canvas canvas) {
+    super.dispatchDraw(canvas);
+    if (scrollMetrics != null) {
+      scrollMetrics.frameDrawn(System.nanoTime());
+    }
+  }
+
+  @Override public void setOnScrollListener(OnScrollListener listener) {
+    // We need scroll state changes ourselves; forward them instead of being replaced.
+    clientScrollListener = listener;
+  }
+
+  private class ScrollStateListener implements OnScrollListener {
+    @Override public void onScrollStateChanged(AbsListView view, int scrollState) {
+      if (scrollMetrics != null) {
+        scrollMetrics.setScrolling(scrollState != SCROLL_STATE_IDLE);
+      }
+      final boolean wasFlinging = flinging;
+      flinging = scrollState == SCROLL_STATE_FLING;
+      if (wasFlinging && !flinging) {
+        // Months bound mid-fling got only day numbers and selection; finish the visible ones.
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+          ((MonthView) getChildAt(i)).decorate();
+        }
+      }
+      if (snapshotCache != null) {
+        final boolean scrolling = scrollState != SCROLL_STATE_IDLE;
+        snapshotCache.setScrolling(scrolling);
+        if (!scrolling) {
+          // Back to live drawing so cells can show pressed and focused states.
+          for (int i = 0, count = getChildCount(); i < count; i++) {
+            getChildAt(i).invalidate();
+          }
+        }
+      }
+      if (clientScrollListener != null) {
+        clientScrollListener.onScrollStateChanged(view, scrollState);
+      }
+    }
+
+    @Override public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+        int totalItemCount) {
+      if (clientScrollListener != null) {
+        clientScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+      }
+    }
   }
 
   @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
@@ -193,32 +506,24 @@ public class CalendarRangePickerView extends ListView
     }
   }
 
-  /** Clears out the hours/minutes/seconds/millis of a Calendar. */
-  private static void setMidnight(Calendar cal) {
-    cal.set(HOUR_OF_DAY, 0);
-    cal.set(MINUTE, 0);
-    cal.set(SECOND, 0);
-    cal.set(MILLISECOND, 0);
-  }
-
   @Override public void handleClick(MonthCellDescriptor cell) {
-    if (betweenDates(cell.getDate(), minCal, maxCal)) {
+    if (betweenDates(cell.getEpochDay(), minDay, maxDay)) {
 
       // Three cases:
       //  1. First click selects start date
       //  2. Second completes the range
       //  3. Third click resets and sets start date again
 
-      if (selectedStartCal.getTimeInMillis() == 0 ||
-          selectedEndCal.getTimeInMillis() != 0) {
+      if (selectedStartDay == NO_DAY || selectedEndDay != NO_DAY
+          || !allowedNights(Math.abs(cell.getEpochDay() - selectedStartDay))) {
 
-        // Case 1 or 3.  Begin new range.
+        // Case 1 or 3, or a range that would be too short or too long.  Begin new range.
         selectRange(cell.getDate(), null);
       } else {
         // Case 2.  Complete range, making sure that start comes before end.
         final Date startDate;
         final Date endDate;
-        if (cell.getDate().before(selectedStartCal.getTime())) {
+        if (cell.getEpochDay() < selectedStartDay) {
           startDate = cell.getDate();
           endDate = selectedStartCal.getTime();
         } else {
@@ -230,22 +535,35 @@ public class CalendarRangePickerView extends ListView
     }
   }
 
-  private void selectCell(MonthCellDescriptor cell) {
-    selectedCells.add(cell);
-    cell.setSelected(true);
-  }
-
   protected void selectRange(Date startDate, Date endDate) {
-    validateRange(startDate, endDate);
-
-    // De-select the currently-selected cells.
-    for (MonthCellDescriptor cell : selectedCells) {
-      cell.setSelected(false);
+    final int startDay = toDay(startDate);
+    final int endDay = toDay(endDate);
+    validateRange(startDay, endDay);
+
+    // Months touched by either the old or the new selection need restyling.
+    int firstChanged = Integer.MAX_VALUE;
+    int lastChanged = Integer.MIN_VALUE;
+    if (selectedStartDay != NO_DAY) {
+      firstChanged = monthIndexOf(selectedStartCal.getTime());
+      lastChanged = selectedEndDay != NO_DAY
+          ? monthIndexOf(selectedEndCal.getTime()) : firstChanged;
+    }
+    if (startDay != NO_DAY) {
+      firstChanged = Math.min(firstChanged, monthIndexOf(startDate));
+      lastChanged = Math.max(lastChanged, monthIndexOf(endDay != NO_DAY ? endDate : startDate));
     }
-    selectedCells.clear();
 
-    // Find and select the new cells.
-    selectCellsInRange(startDate, endDate);
+    // Restate the built months touched by either selection.  Months built later start out in the
+    // new selection.
+    selectedStartDay = startDay;
+    selectedEndDay = endDay;
+    for (int i = Math.max(firstChanged, 0), last = Math.min(lastChanged, cells.size() - 1);
+        i <= last; i++) {
+      final List<List<MonthCellDescriptor>> monthCells = cells.peek(i);
+      if (monthCells != null) {
+        selectCellsInRange(monthCells, startDay, endDay);
+      }
+    }
 
     // Track the currently selected date range.
     if (startDate == null) {
@@ -260,8 +578,8 @@ public class CalendarRangePickerView extends ListView
       selectedEndCal.setTime(endDate);
     }
 
-    // Update the adapter.
-    adapter.notifyDataSetChanged();
+    // Update the affected months.
+    refreshMonths(firstChanged, lastChanged);
 
     // Notify our listener
     if (listener != null) {
@@ -271,181 +589,380 @@ public class CalendarRangePickerView extends ListView
         listener.onRangeCompleted();
       }
     }
+    selectionNotifier.selectionChanged();
   }
 
-  private void selectCellsInRange(Date startDate, Date endDate) {
-    boolean selecting = false;
-    boolean inRange;
+  /**
+   * Jumps to {@code month} ({@link Calendar#MONTH}) of {@code year}, e.g. when it's picked from a
+   * {@link CalendarYearView}.  Returns false, and does nothing, if that month isn't displayed.
+   */
+  public boolean scrollToMonth(int year, int month) {
+    if (months.isEmpty()) {
+      return false;
+    }
+    final MonthDescriptor first = months.get(0);
+    final int index = (year - first.getYear()) * 12 + month - first.getMonth();
+    if (index < 0 || index >= months.size()) {
+      return false;
+    }
+    setSelection(index);
+    return true;
+  }
 
-    for (List<List<MonthCellDescriptor>> month : cells) {
-      for (List<MonthCellDescriptor> week : month) {
-        for (MonthCellDescriptor cell : week) {
+  /** Returns the position in {@link #months} of the month containing {@code date}. */
+  private int monthIndexOf(Date date) {
+    monthCounter.setTime(date);
+    final MonthDescriptor first = months.get(0);
+    return (monthCounter.get(YEAR) - first.getYear()) * 12
+        + monthCounter.get(MONTH) - first.getMonth();
+  }
 
-          // Skip cells that are for a different month
-          if (cell.isCurrentMonth()) {
-            inRange = betweenDates(cell.getDate(), startDate, endDate, true, true);
-            if (inRange) {
-              selecting = true;
-              selectCell(cell);
-            } else {
-              if (selecting == true) {
-                // We hit the end of the range.  We are done.
-                return;
-              }
-            }
-          }
+  /**
+   * Marks the months at positions {@code from} through {@code to} as changed and restyles the
+   * on-screen ones in place.  Months off screen pick up the change when the adapter next binds
+   * them, so there is no need for a {@code notifyDataSetChanged()} that would rebind and re-layout
+   * every visible month.
+   */
+  private void refreshMonths(int from, int to) {
+    for (int i = Math.max(from, 0), last = Math.min(to, months.size() - 1); i <= last; i++) {
+      monthVersions[i]++;
+    }
+    final int firstPosition = getFirstVisiblePosition();
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      final int position = firstPosition + i;
+      if (position >= from && position <= to) {
+        final MonthView monthView = (MonthView) getChildAt(i);
+        monthView.setHeatmap(heatmap, minDay);
+        monthView.refreshCells();
+      }
+    }
+  }
 
-        }
+  @Override public boolean onKeyDown(int keyCode, KeyEvent event) {
+    // Arrow keys move focus between days; the list's own handling would only scroll it.
+    final int offset = DayFocus.offsetFor(keyCode);
+    if (offset != 0 && !months.isEmpty()) {
+      final boolean moved = dayFocus.getDay() == DayFocus.NO_DAY
+          ? dayFocus.focus(initialFocusDay()) : dayFocus.moveBy(offset);
+      if (moved) {
+        return true;
       }
+    } else if ((keyCode == KeyEvent.KEYCODE_DPAD_CENTER || keyCode == KeyEvent.KEYCODE_ENTER)
+        && dayFocus.getDay() != DayFocus.NO_DAY) {
+      handleClick(cellFor(dayFocus.getDay()));
+      return true;
     }
+    return super.onKeyDown(keyCode, event);
   }
 
-  private class MonthAdapter extends BaseAdapter {
-    private final LayoutInflater inflater;
+  @Override protected void onFocusChanged(boolean gainFocus, int direction, Rect previous) {
+    super.onFocusChanged(gainFocus, direction, previous);
+    if (!gainFocus) {
+      dayFocus.clear();
+    }
+  }
 
-    private MonthAdapter() {
-      inflater = LayoutInflater.from(getContext());
+  /**
+   * The day the arrow keys focus first: the range start if its month is on screen, otherwise
+   * the first day of the first month shown.
+   */
+  private int initialFocusDay() {
+    final int selected = selectedStartDay;
+    if (selected != NO_DAY) {
+      final int index = model.indexOf(selected);
+      if (index >= getFirstVisiblePosition() && index <= getLastVisiblePosition()) {
+        return selected;
+      }
     }
+    return model.getGrid(getFirstVisiblePosition()).getFirstDay();
+  }
 
-    @Override public boolean isEnabled(int position) {
-      // Disable selectability: each cell will handle that itself.
-      return false;
+  @Override public boolean onInterceptTouchEvent(MotionEvent event) {
+    if (dragging) {
+      // The long press started a drag since the last event: take the gesture from the cell.
+      onDragEvent(event);
+      return true;
     }
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_DOWN:
+        downX = event.getX();
+        downY = event.getY();
+        postDelayed(startDrag, longPressTimeout);
+        break;
+      case MotionEvent.ACTION_MOVE:
+        if (Math.abs(event.getX() - downX) > touchSlop
+            || Math.abs(event.getY() - downY) > touchSlop) {
+          removeCallbacks(startDrag); // A scroll, not a long press.
+        }
+        break;
+      default:
+        removeCallbacks(startDrag);
+        break;
+    }
+    return super.onInterceptTouchEvent(event);
+  }
 
-    @Override public int getCount() {
-      return months.size();
+  @Override public boolean onTouchEvent(MotionEvent event) {
+    if (dragging) {
+      onDragEvent(event);
+      return true;
     }
+    return super.onTouchEvent(event);
+  }
 
-    @Override public Object getItem(int position) {
-      return months.get(position);
+  private class StartDragRunnable implements Runnable {
+    @Override public void run() {
+      final MonthCellDescriptor cell = cellAt(downX, downY);
+      if (cell == null || !cell.isCurrentMonth()
+          || !betweenDates(cell.getEpochDay(), minDay, maxDay)) {
+        return;
+      }
+      getParent().requestDisallowInterceptTouchEvent(true);
+      startDrag(cell.getEpochDay());
     }
+  }
 
-    @Override public long getItemId(int position) {
-      return position;
+  /** Starts a range at {@code day}, a selectable day, and anchors a drag preview there. */
+  void startDrag(int day) {
+    dragging = true;
+    selectRange(cellFor(day).getDate(), null);
+    dragAnchorDay = day;
+    previewStartDay = day;
+    previewEndDay = day;
+  }
+
+  private void onDragEvent(MotionEvent event) {
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_MOVE:
+        final MonthCellDescriptor cell = cellAt(event.getX(), event.getY());
+        if (cell != null && cell.isCurrentMonth()) {
+          previewTo(cell.getEpochDay());
+        }
+        break;
+      case MotionEvent.ACTION_UP:
+        completeDrag();
+        break;
+      case MotionEvent.ACTION_CANCEL:
+        dragging = false;
+        previewTo(dragAnchorDay);
+        break;
+      default:
+        break;
     }
+  }
 
-    @Override public View getView(int position, View convertView, ViewGroup parent) {
-      MonthView monthView = (MonthView) convertView;
-      if (monthView == null) {
-        monthView = MonthView.create(getMonthResourceId(), parent, inflater, weekdayNameFormat,
-                                     CalendarRangePickerView.this, today);
+  /** Returns the descriptor of the cell at ({@code x}, {@code y}) in this view, or null. */
+  private MonthCellDescriptor cellAt(float x, float y) {
+    for (int i = 0, count = getChildCount(); i < count; i++) {
+      final View child = getChildAt(i);
+      if (y >= child.getTop() && y < child.getBottom()) {
+        return ((MonthView) child).cellAt((int) x - child.getLeft(), (int) y - child.getTop());
       }
-      monthView.init(months.get(position), cells.get(position));
-      return monthView;
     }
+    return null;
   }
 
   /**
-   * @param month Descriptor for month we are working with
-   * @param startCal Calendar for the month we are working with
-   * @param selectedStartDate Earliest initially selected date, inclusive.
-   * @param selectedEndDate Latest initially selected date, inclusive.
+   * Previews the range from the drag anchor to {@code day}, clamped to the selectable days and the
+   * nights limits.  Runs at touch rate, so only the days whose state changes are touched: those
+   * between the old and new start, and between the old and new end.
    */
-  List<List<MonthCellDescriptor>> getMonthCells(MonthDescriptor month, Calendar startCal,
-      Calendar selectedStartDate, Calendar selectedEndDate) {
-
-    Calendar cal = Calendar.getInstance();
-
-    cal.setTime(startCal.getTime());
-    List<List<MonthCellDescriptor>> cells = new ArrayList<List<MonthCellDescriptor>>();
-    cal.set(DAY_OF_MONTH, 1);
-    int firstDayOfWeek = cal.get(DAY_OF_WEEK);
-    cal.add(DATE, SUNDAY - firstDayOfWeek);
-    while ((cal.get(MONTH) < month.getMonth() + 1 || cal.get(YEAR) < month.getYear()) //
-        && cal.get(YEAR) <= month.getYear()) {
-      Logr.d("Building week row starting at %s", cal.getTime());
-      List<MonthCellDescriptor> weekCells = new ArrayList<MonthCellDescriptor>();
-      cells.add(weekCells);
-      for (int c = 0; c < 7; c++) {
-        Date date = cal.getTime();
-        boolean isCurrentMonth = cal.get(MONTH) == month.getMonth();
-        boolean isSelected = isCurrentMonth &&
-          betweenDates(cal, selectedStartDate, selectedEndDate, true, true);
-
-        boolean isSelectable = isCurrentMonth && betweenDates(cal, minCal, maxCal);
-        boolean isToday = sameDate(cal, today);
-        int value = cal.get(DAY_OF_MONTH);
-        MonthCellDescriptor cell =
-          createDescriptor(date, isCurrentMonth, isSelectable, isSelected, isToday, value);
-        if (isSelected) {
-          selectedCells.add(cell);
-        }
-        weekCells.add(cell);
-        cal.add(DATE, 1);
+  void previewTo(int day) {
+    day = Math.max(minDay, Math.min(day, maxDay - 1));
+    final int nights = Math.abs(day - dragAnchorDay);
+    if (nights > maxNights) {
+      day = day > dragAnchorDay ? dragAnchorDay + maxNights : dragAnchorDay - maxNights;
+    } else if (nights > 0 && nights < minNights) {
+      // Too short to complete: preview the shortest range in the drag's direction, if it fits.
+      day = day > dragAnchorDay ? dragAnchorDay + minNights : dragAnchorDay - minNights;
+      if (!betweenDates(day, minDay, maxDay)) {
+        day = dragAnchorDay;
       }
     }
-    return cells;
+    final int start = Math.min(dragAnchorDay, day);
+    final int end = Math.max(dragAnchorDay, day);
+    final int oldStart = previewStartDay;
+    final int oldEnd = previewEndDay;
+    previewStartDay = start;
+    previewEndDay = end;
+    updatePreviewCells(Math.min(oldStart, start), Math.max(oldStart, start));
+    updatePreviewCells(Math.min(oldEnd, end), Math.max(oldEnd, end));
   }
 
-  protected MonthCellDescriptor createDescriptor(Date date, boolean currentMonth,
-                                                 boolean selectable, boolean selected,
-                                                 boolean today, int value) {
-
-    return new MonthCellDescriptor(date, currentMonth, selectable, selected, today, value);
+  /**
+   * Restates the days {@code fromDay} through {@code toDay}, consecutive selectable days, from the
+   * preview.  Months that aren't built are skipped: {@link MonthCellsBuilder} builds them from the
+   * preview while the drag lasts.
+   */
+  private void updatePreviewCells(int fromDay, int toDay) {
+    // Days are consecutive, so the month and cell of each follow from the previous one's.
+    int index = model.indexOf(fromDay);
+    MonthGrid grid = model.getGrid(index);
+    List<List<MonthCellDescriptor>> monthCells = cells.peek(index);
+    for (int day = fromDay; day <= toDay; day++) {
+      if (!grid.isCurrentMonth(day)) {
+        grid = model.getGrid(++index);
+        monthCells = cells.peek(index);
+      }
+      if (monthCells == null) {
+        continue;
+      }
+      final int offset = day - grid.getFirstCellDay();
+      final MonthCellDescriptor cell = monthCells.get(offset / 7).get(offset % 7);
+      final boolean selected = day >= previewStartDay && day <= previewEndDay;
+      final RangeState rangeState =
+          selected ? rangeState(day, previewStartDay, previewEndDay) : RangeState.NONE;
+      if (cell.isSelected() != selected || cell.getRangeState() != rangeState) {
+        cell.setSelected(selected);
+        cell.setRangeState(rangeState);
+        refreshDay(index, day);
+      }
+    }
   }
 
-  private static boolean sameDate(Calendar cal, Calendar selectedDate) {
-    return cal.get(MONTH) == selectedDate.get(MONTH)
-        && cal.get(YEAR) == selectedDate.get(YEAR)
-        && cal.get(DAY_OF_MONTH) == selectedDate.get(DAY_OF_MONTH);
+  /** Makes the previewed range the selection, if it satisfies the nights limits. */
+  void completeDrag() {
+    dragging = false;
+    if (previewStartDay == previewEndDay || !allowedNights(previewEndDay - previewStartDay)) {
+      // Leave the range started at the anchor, as if it had been tapped.
+      previewTo(dragAnchorDay);
+      return;
+    }
+    selectRange(cellFor(previewStartDay).getDate(), cellFor(previewEndDay).getDate());
   }
 
   /**
-   * Include minCal but exclude maxCal
+   * Returns the descriptor for {@code day} in its own month.  The day must be within the
+   * displayed months.
    */
-  private static boolean betweenDates(Calendar cal, Calendar minCal, Calendar maxCal) {
-    return betweenDates(cal, minCal, maxCal, true, false);
+  private MonthCellDescriptor cellFor(int day) {
+    final int index = model.indexOf(day);
+    final List<List<MonthCellDescriptor>> monthCells = cells.get(index);
+    final int offset = day - model.getGrid(index).getFirstCellDay();
+    return monthCells.get(offset / 7).get(offset % 7);
   }
 
-  private static boolean betweenDates(Calendar cal, Calendar minCal, Calendar maxCal,
-                                      boolean includeMin, boolean includeMax) {
-    return betweenDates(cal.getTime(), minCal, maxCal, includeMin, includeMax);
+  /** Restyles the cell for {@code day} in its own month at {@code index}, if that's on screen. */
+  private void refreshDay(int index, int day) {
+    monthVersions[index]++;
+    final int childIndex = index - getFirstVisiblePosition();
+    if (childIndex >= 0 && childIndex < getChildCount()) {
+      ((MonthView) getChildAt(childIndex)).refreshCell(day);
+    }
   }
 
-  /**
-   * Include minCal but exclude maxCal
-   */
-  private static boolean betweenDates(Date date, Calendar minCal, Calendar maxCal) {
-    return betweenDates(date, minCal, maxCal, true, false);
+  private static void selectCellsInRange(List<List<MonthCellDescriptor>> monthCells,
+      int startDay, int endDay) {
+    for (List<MonthCellDescriptor> week : monthCells) {
+      for (MonthCellDescriptor cell : week) {
+        // Skip cells that are for a different month
+        if (cell.isCurrentMonth()) {
+          final boolean selected = inSelection(cell.getEpochDay(), startDay, endDay);
+          cell.setSelected(selected);
+          cell.setRangeState(
+              selected ? rangeState(cell.getEpochDay(), startDay, endDay) : RangeState.NONE);
+        }
+      }
+    }
   }
 
-  private static boolean betweenDates(Date date, Calendar minCal, Calendar maxCal,
-                                      boolean includeMin, boolean includeMax) {
+  private class SelectionCallback implements SelectionNotifier.Callback {
+    @Override public void deliverSelection() {
+      final Date newStart = getSelectedStartDate();
+      final Date newEnd = getSelectedEndDate();
+      if (equal(newStart, deliveredStart) && equal(newEnd, deliveredEnd)) {
+        return;
+      }
+      final Date oldStart = deliveredStart;
+      final Date oldEnd = deliveredEnd;
+      deliveredStart = newStart;
+      deliveredEnd = newEnd;
+      if (rangeSelectedListener != null) {
+        rangeSelectedListener.onRangeSelected(oldStart, oldEnd, newStart, newEnd);
+      }
+    }
+  }
 
-    Date min = null;
-    Date max = null;
+  private static boolean equal(Date a, Date b) {
+    return a == null ? b == null : a.equals(b);
+  }
 
-    if (minCal != null && minCal.getTimeInMillis() != 0) {
-      min = minCal.getTime();
+  private class MonthCellsBuilder implements MonthCells.Builder {
+    @Override public List<List<MonthCellDescriptor>> build(int index) {
+      // Mid-drag, months built or rebuilt as they scroll in show the preview.
+      if (dragging) {
+        return getMonthCells(model.getGrid(index), previewStartDay, previewEndDay);
+      }
+      return getMonthCells(model.getGrid(index), selectedStartDay, selectedEndDay);
     }
-    if (maxCal != null && maxCal.getTimeInMillis() != 0) {
-      max = maxCal.getTime();
+  }
+
+  private class MonthAdapter extends BaseAdapter {
+    private final LayoutInflater inflater;
+
+    private MonthAdapter() {
+      inflater = LayoutInflater.from(getContext());
     }
 
-    return betweenDates(date, min, max, includeMin, includeMax);
-  }
+    @Override public boolean isEnabled(int position) {
+      // Disable selectability: each cell will handle that itself.
+      return false;
+    }
 
-  // Include min but exclude max
-  private static boolean betweenDates(Date date, Date min, Date max) {
-    return betweenDates(date, min, max, true, false);
-  }
+    @Override public int getCount() {
+      return months.size();
+    }
 
-  private static boolean betweenDates(Date date, Date min, Date max, boolean includeMin, boolean includeMax) {
-    if (date != null && min != null) {
-      // Case 1: No max date.  Only a match if we are exactly on the min date.
-      if (max == null && includeMin && date.equals(min)) {
-        return true;
-      }
+    @Override public Object getItem(int position) {
+      return months.get(position);
+    }
 
-      // Case 2: Full range available
-      if (max != null &&
-          ( date.after(min)  || (includeMin && date.equals(min)) ) &&
-          ( date.before(max) || (includeMax && date.equals(max)) )) {
-        return true;
+    @Override public boolean hasStableIds() {
+      return true;
+    }
+
+    @Override public long getItemId(int position) {
+      final MonthDescriptor month = months.get(position);
+      return month.getYear() * 12L + month.getMonth();
+    }
+
+    @Override public View getView(int position, View convertView, ViewGroup parent) {
+      final long bindStart = scrollMetrics != null ? System.nanoTime() : 0;
+      MonthView monthView = (MonthView) convertView;
+      if (monthView == null) {
+        monthView = MonthView.create(getMonthResourceId(), parent, inflater, weekLayout,
+                                     CalendarRangePickerView.this);
       }
+      monthView.setWeekLayout(weekLayout);
+      monthView.setSnapshotCache(snapshotCache, position);
+      monthView.setCellBinder(cellBinder);
+      monthView.setGridMetrics(gridMetrics);
+      monthView.setAccessibilityDateFormat(fullDateFormat);
+      monthView.setHeatmap(heatmap, minDay);
+      monthView.init(months.get(position), cells.get(position), !flinging);
+      dayFocus.bind(monthView, position);
+      if (scrollMetrics != null) {
+        scrollMetrics.bindFinished(System.nanoTime() - bindStart);
+      }
+      return monthView;
     }
+  }
 
-    return false;
+  /**
+   * Builds this picker's descriptors for {@code grid}.
+   *
+   * @param selectedStartDay Epoch day of the earliest selected date, inclusive, or {@link #NO_DAY}.
+   * @param selectedEndDay Epoch day of the latest selected date, inclusive, or {@link #NO_DAY}.
+   */
+  List<List<MonthCellDescriptor>> getMonthCells(MonthGrid grid, int selectedStartDay,
+      int selectedEndDay) {
+    return calendarCells.build(grid, selectedStartDay, selectedEndDay);
   }
 
+  protected MonthCellDescriptor createDescriptor(Date date, boolean currentMonth,
+                                                 boolean selectable, boolean selected,
+                                                 boolean today, int value) {
+
+    return new MonthCellDescriptor(date, currentMonth, selectable, selected, today, value);
+  }
 }
@@ -17,6 +17,11 @@ public class CalendarRowView extends ViewGroup implements View.OnClickListener {
   private int cellWidth;
   private int oldWidthMeasureSpec;
   private int oldHeightMeasureSpec;
+  private CellBinder cellBinder;
+  /** Holders by column and view type, created as the binder's cells are first bound. */
+  private CellBinder.ViewHolder[][] holders;
+  /** The cells inflated with the row, put back when the binder is removed. */
+  private View[] stockCells;
 
   public CalendarRowView(Context context, AttributeSet attrs) {
     super(context, attrs);
@@ -27,8 +32,16 @@ public class CalendarRowView extends ViewGroup implements View.OnClickListener {
     super.addView(child, index, params);
   }
 
+  /**
+   * Whether the row was last measured with these specs and its cells haven't changed since, so
+   * measuring it again would change nothing.
+   */
+  boolean isMeasuredWith(int widthMeasureSpec, int heightMeasureSpec) {
+    return oldWidthMeasureSpec == widthMeasureSpec && oldHeightMeasureSpec == heightMeasureSpec;
+  }
+
   @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-    if (oldWidthMeasureSpec == widthMeasureSpec && oldHeightMeasureSpec == heightMeasureSpec) {
+    if (isMeasuredWith(widthMeasureSpec, heightMeasureSpec)) {
       Logr.d("SKIP Row.onMeasure");
       setMeasuredDimension(getMeasuredWidth(), getMeasuredHeight());
       return;
@@ -67,6 +80,74 @@ public class CalendarRowView extends ViewGroup implements View.OnClickListener {
     Logr.d("Row.onLayout %d ms", System.currentTimeMillis() - start);
   }
 
+  /**
+   * Binds cells with {@code binder} from now on, or with the stock cells for null.  Switching
+   * binders drops the cached holders.
+   */
+  void setCellBinder(CellBinder binder) {
+    if (cellBinder == binder) {
+      return;
+    }
+    if (cellBinder == null) {
+      stockCells = new View[getChildCount()];
+      for (int c = 0; c < stockCells.length; c++) {
+        stockCells[c] = getChildAt(c);
+      }
+    }
+    removeAllViews();
+    cellBinder = binder;
+    if (binder == null) {
+      holders = null;
+      for (View cell : stockCells) {
+        addView(cell);
+      }
+      stockCells = null;
+    } else {
+      holders = new CellBinder.ViewHolder[7][binder.getViewTypeCount()];
+    }
+    childrenChanged();
+  }
+
+  /**
+   * Shows {@code cell} in {@code column} with the row's {@link CellBinder}, swapping in the
+   * column's view for the cell's view type if another is showing.  Columns are added in order the
+   * first time they're bound.  Returns the bound view.
+   */
+  View bindCell(int column, MonthCellDescriptor cell) {
+    final int viewType = cellBinder.getViewType(cell);
+    if (viewType < 0 || viewType >= holders[column].length) {
+      throw new IllegalStateException("View type " + viewType + " is outside of 0 to "
+          + (holders[column].length - 1));
+    }
+    CellBinder.ViewHolder holder = holders[column][viewType];
+    if (holder == null) {
+      holder = cellBinder.createViewHolder(this, viewType);
+      holders[column][viewType] = holder;
+    }
+    final View view = holder.itemView;
+    if (column >= getChildCount()) {
+      addView(view);
+      childrenChanged();
+    } else if (getChildAt(column) != view) {
+      removeViewAt(column);
+      addView(view, column);
+      childrenChanged();
+    }
+    view.setTag(cell);
+    cellBinder.bindViewHolder(holder, cell);
+    return view;
+  }
+
+  /**
+   * Measures the row again on the next pass.  With {@link GridMetrics} the row is measured with the
+   * same specs every time, so views swapped in would otherwise never be measured.
+   */
+  private void childrenChanged() {
+    oldWidthMeasureSpec = 0;
+    oldHeightMeasureSpec = 0;
+    requestLayout();
+  }
+
   public void setIsHeaderRow(boolean isHeaderRow) {
     this.isHeaderRow = isHeaderRow;
   }
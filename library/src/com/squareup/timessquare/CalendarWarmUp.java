@@ -0,0 +1,76 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.LayoutInflater;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static java.util.Calendar.DAY_OF_MONTH;
+import static java.util.Calendar.MONTH;
+
+/**
+ * Pays the one-time costs of the first picker in a process ahead of time: loading the locale's
+ * date format data, computing month layouts, loading the cell selectors and the classes and XML
+ * of the month layout.  Everything {@link #warmUp} warms lives in process-wide caches, the JDK's,
+ * the framework's or {@link MonthGridCache}, so pickers opened later find it there.
+ * <p>
+ * The date formats themselves are kept per thread by {@link DateFormats}, so formats built in the
+ * background never reach the main thread.  {@link #warmUpFormats} builds them on the thread that
+ * calls it instead.
+ */
+public final class CalendarWarmUp {
+  /** Months warmed, starting with the current one: a year of months and the next partial one. */
+  static final int MONTHS = 13;
+
+  private CalendarWarmUp() {
+  }
+
+  /**
+   * Warms the caches a picker opening in the default locale and time zone uses.  Safe to call from
+   * any thread, and meant for a background thread at startup.  Of the date formats, only the JDK's
+   * locale data is warmed.  Nothing {@code context} inflates is kept, so any context will do.
+   */
+  public static void warmUp(Context context) {
+    final long start = System.currentTimeMillis();
+    final Date now = new Date();
+    // The first format in a locale loads its symbols and calendar data.  The formats are dropped:
+    // pickers get theirs from DateFormats, on their own thread.
+    new SimpleDateFormat(context.getString(R.string.day_name_format)).format(now);
+    DateFormat.getDateInstance(DateFormat.MEDIUM).format(now);
+
+    final Calendar cal = Calendar.getInstance();
+    cal.set(DAY_OF_MONTH, 1);
+    final Date firstMonth = cal.getTime();
+    cal.add(MONTH, MONTHS);
+    final CalendarModel model = CalendarModels.create(context, firstMonth, cal.getTime());
+    new CalendarCells(model, now).build(0, now, null);
+
+    final Resources res = context.getResources();
+    res.getColorStateList(R.color.calendar_text_selector);
+    res.getColor(R.color.calendar_text_unselectable);
+    res.getDrawable(R.color.calendar_bg_selector);
+
+    // Caches the view constructors and the parsed layouts.  The views are dropped: one inflated
+    // with another context would carry that context's theme, and could leak it.
+    LayoutInflater.from(context).inflate(R.layout.month, null, false);
+    Logr.d("Warm-up took %d ms", System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Builds the date formats a picker in the default locale and time zone uses, through {@link
+   * DateFormats} and so any installed {@link DateFormats.Provider}, for the calling thread.  Call
+   * it on the thread pickers are created on, usually the main thread, e.g. posted there once
+   * {@link #warmUp} finishes loading the locale data.
+   */
+  public static void warmUpFormats(Context context) {
+    final TimeZone timeZone = TimeZone.getDefault();
+    DateFormats.forPattern(context.getString(R.string.month_name_format), timeZone);
+    DateFormats.forPattern(context.getString(R.string.day_name_format), timeZone);
+    DateFormats.forStyle(DateFormat.MEDIUM, timeZone);
+  }
+}
@@ -0,0 +1,328 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.widget.CheckedTextView;
+import android.widget.Scroller;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static android.view.View.MeasureSpec.EXACTLY;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static java.util.Calendar.DAY_OF_MONTH;
+import static java.util.Calendar.SATURDAY;
+import static java.util.Calendar.SUNDAY;
+
+/**
+ * Horizontally swipeable strip showing one week at a time, for screens that don't need a whole
+ * month.  Each page is a single {@link CalendarRowView} bound from a week model of seven epoch
+ * days computed on demand, so the strip scrolls indefinitely in both directions while only ever
+ * holding three rows: the current week and its two neighbors.  Must be initialized with
+ * {@link #init(java.util.Date)}.
+ * <p>
+ * Cell clicks select the day and are forwarded to the same {@link MonthView.Listener} the month
+ * views use.
+ */
+public class CalendarWeekStripView extends ViewGroup {
+  static final int PREVIOUS = 0;
+  static final int CURRENT = 1;
+  static final int NEXT = 2;
+  private static final int SETTLE_DURATION_MS = 250;
+
+  /** Recycled pool: the previous, current and next weeks, in that order. */
+  final CalendarRowView[] rows = new CalendarRowView[3];
+  private final Scroller scroller;
+  private final int touchSlop;
+  private final int minFlingVelocity;
+  private final String weekdayNamePattern;
+  private final MonthView.Listener cellListener = new CellClickedListener();
+  private MonthView.Listener listener;
+
+  private TimeZone timeZone = TimeZone.getDefault();
+  private final Calendar cal = Calendar.getInstance();
+  private int firstDayOfWeek = cal.getFirstDayOfWeek();
+  private WeekLayout weekLayout;
+  private int weekStartDay; // Epoch day of the current week's first column.
+  private int selectedDay;
+  private int todayDay;
+
+  private VelocityTracker velocityTracker;
+  private float downX;
+  private float lastX;
+  private boolean dragging;
+
+  public CalendarWeekStripView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    final LayoutInflater inflater = LayoutInflater.from(context);
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = (CalendarRowView) inflater.inflate(R.layout.week, this, false);
+      rows[i].setListener(cellListener);
+      addView(rows[i]);
+    }
+    scroller = new Scroller(context);
+    final ViewConfiguration configuration = ViewConfiguration.get(context);
+    touchSlop = configuration.getScaledTouchSlop();
+    minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+    weekdayNamePattern = context.getString(R.string.day_name_format);
+  }
+
+  public void init(Date selectedDate) {
+    init(selectedDate, TimeZone.getDefault());
+  }
+
+  /** Shows the week containing {@code selectedDate}, interpreted in {@code timeZone}. */
+  public void init(Date selectedDate, TimeZone timeZone) {
+    if (selectedDate == null || timeZone == null) {
+      throw new IllegalArgumentException("Selected date and time zone must be non-null");
+    }
+    this.timeZone = timeZone;
+    cal.setTimeZone(timeZone);
+    weekLayout =
+        new WeekLayout(firstDayOfWeek, DateFormats.forPattern(weekdayNamePattern, timeZone));
+    selectedDay = EpochDays.of(selectedDate, timeZone);
+    todayDay = EpochDays.of(System.currentTimeMillis(), timeZone);
+    showWeekOf(selectedDay);
+  }
+
+  /**
+   * Sets the day shown in the first column, {@link Calendar#SUNDAY} through {@link
+   * Calendar#SATURDAY}.  Defaults to the first day of the week of the default locale.  Takes effect
+   * on the next call to {@code init()}.
+   */
+  public void setFirstDayOfWeek(int firstDayOfWeek) {
+    if (firstDayOfWeek < SUNDAY || firstDayOfWeek > SATURDAY) {
+      throw new IllegalArgumentException("Invalid first day of week: " + firstDayOfWeek);
+    }
+    this.firstDayOfWeek = firstDayOfWeek;
+  }
+
+  public void setListener(MonthView.Listener listener) {
+    this.listener = listener;
+  }
+
+  public Date getSelectedDate() {
+    EpochDays.toCalendar(selectedDay, cal);
+    return cal.getTime();
+  }
+
+  /** Jumps, without animating, to the week containing {@code date}. */
+  public void showWeekOf(Date date) {
+    showWeekOf(EpochDays.of(date, timeZone));
+  }
+
+  private void showWeekOf(int day) {
+    scroller.forceFinished(true);
+    weekStartDay = day - weekLayout.columnOf(day);
+    bindRow(rows[PREVIOUS], weekStartDay - 7);
+    bindRow(rows[CURRENT], weekStartDay);
+    bindRow(rows[NEXT], weekStartDay + 7);
+    scrollTo(getWidth(), 0);
+  }
+
+  /** Binds {@code row} to the seven days starting at {@code firstDay}. */
+  private void bindRow(CalendarRowView row, int firstDay) {
+    for (int c = 0; c < 7; c++) {
+      final int day = firstDay + c;
+      EpochDays.toCalendar(day, cal);
+      MonthCellDescriptor cell = new MonthCellDescriptor(cal.getTime(), true, true,
+          day == selectedDay, day == todayDay, cal.get(DAY_OF_MONTH));
+      cell.setEpochDay(day);
+      final CheckedTextView cellView = (CheckedTextView) row.getChildAt(c);
+      cellView.setText(Integer.toString(cell.getValue()));
+      stylizeCellView(cellView, cell);
+      cellView.setTag(cell);
+    }
+  }
+
+  protected void stylizeCellView(CheckedTextView cellView, MonthCellDescriptor cell) {
+    MonthView.stylizeCellViewDefault(cellView, cell);
+  }
+
+  private class CellClickedListener implements MonthView.Listener {
+    @Override public void handleClick(MonthCellDescriptor cell) {
+      selectedDay = cell.getEpochDay();
+      // Restyle in place: only the selection state of the pooled rows changed.
+      for (CalendarRowView row : rows) {
+        for (int c = 0; c < 7; c++) {
+          final CheckedTextView cellView = (CheckedTextView) row.getChildAt(c);
+          final MonthCellDescriptor rowCell = (MonthCellDescriptor) cellView.getTag();
+          if (rowCell.isSelected() != (rowCell.getEpochDay() == selectedDay)) {
+            rowCell.setSelected(!rowCell.isSelected());
+            stylizeCellView(cellView, rowCell);
+          }
+        }
+      }
+      if (listener != null) {
+        listener.handleClick(cell);
+      }
+    }
+  }
+
+  @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    if (weekLayout == null) {
+      throw new IllegalStateException(
+          "Must have a week to display.  Did you forget to call init()?");
+    }
+    final int width = MeasureSpec.getSize(widthMeasureSpec);
+    int height = MeasureSpec.getSize(heightMeasureSpec);
+    if (MeasureSpec.getMode(heightMeasureSpec) != EXACTLY) {
+      height = width / 7; // Square cells, like CalendarGridView's default aspect ratio.
+    }
+    final int rowWidthSpec = makeMeasureSpec(width, EXACTLY);
+    final int rowHeightSpec = makeMeasureSpec(height, EXACTLY);
+    for (CalendarRowView row : rows) {
+      row.measure(rowWidthSpec, rowHeightSpec);
+    }
+    setMeasuredDimension(width, height);
+  }
+
+  @Override protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    positionRows();
+    if (changed && !dragging && scroller.isFinished()) {
+      scrollTo(getWidth(), 0);
+    }
+  }
+
+  /** Lays the pooled rows out side by side; the current week sits at scrollX == width. */
+  private void positionRows() {
+    final int width = getWidth();
+    final int height = getHeight();
+    for (int i = 0; i < rows.length; i++) {
+      rows[i].layout(i * width, 0, (i + 1) * width, height);
+    }
+  }
+
+  @Override public boolean onInterceptTouchEvent(MotionEvent event) {
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_DOWN:
+        downX = event.getX();
+        lastX = downX;
+        // Catch a settling strip mid-flight rather than letting the cells see a tap.
+        dragging = !scroller.isFinished();
+        finishSettle();
+        break;
+      case MotionEvent.ACTION_MOVE:
+        if (!dragging && Math.abs(event.getX() - downX) > touchSlop) {
+          dragging = true;
+          lastX = event.getX();
+          getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        break;
+      default:
+        dragging = false;
+        break;
+    }
+    return dragging;
+  }
+
+  @Override public boolean onTouchEvent(MotionEvent event) {
+    if (velocityTracker == null) {
+      velocityTracker = VelocityTracker.obtain();
+    }
+    velocityTracker.addMovement(event);
+
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_DOWN:
+        finishSettle();
+        lastX = event.getX();
+        dragging = true;
+        break;
+      case MotionEvent.ACTION_MOVE:
+        final float x = event.getX();
+        final int scrollX = getScrollX() + Math.round(lastX - x);
+        scrollTo(Math.max(0, Math.min(scrollX, 2 * getWidth())), 0);
+        lastX = x;
+        break;
+      case MotionEvent.ACTION_UP:
+        velocityTracker.computeCurrentVelocity(1000);
+        final float velocity = velocityTracker.getXVelocity();
+        final int page;
+        if (velocity > minFlingVelocity) {
+          page = PREVIOUS;
+        } else if (velocity < -minFlingVelocity) {
+          page = NEXT;
+        } else {
+          page = Math.round(getScrollX() / (float) getWidth());
+        }
+        releaseVelocityTracker();
+        settleTo(page);
+        break;
+      case MotionEvent.ACTION_CANCEL:
+        releaseVelocityTracker();
+        settleTo(CURRENT);
+        break;
+      default:
+        break;
+    }
+    return true;
+  }
+
+  private void releaseVelocityTracker() {
+    velocityTracker.recycle();
+    velocityTracker = null;
+  }
+
+  /** Animates to {@code page}: {@link #PREVIOUS}, {@link #CURRENT} or {@link #NEXT}. */
+  void settleTo(int page) {
+    dragging = false;
+    final int startX = getScrollX();
+    scroller.startScroll(startX, 0, page * getWidth() - startX, 0, SETTLE_DURATION_MS);
+    invalidate();
+  }
+
+  @Override public void computeScroll() {
+    if (scroller.computeScrollOffset()) {
+      scrollTo(scroller.getCurrX(), 0);
+      if (scroller.isFinished()) {
+        onSettled();
+      } else {
+        invalidate();
+      }
+    }
+  }
+
+  /**
+   * Jumps a settle in progress to its end, recycling the rows as if it had finished.  Aborting the
+   * scroller alone would skip {@link #computeScroll()}, leaving the strip between pages.
+   */
+  private void finishSettle() {
+    if (!scroller.isFinished()) {
+      scroller.abortAnimation();
+      scrollTo(scroller.getFinalX(), 0);
+      onSettled();
+    }
+  }
+
+  /** Recycles the row that scrolled out of the pool to hold the newly adjacent week. */
+  private void onSettled() {
+    final int width = getWidth();
+    if (width == 0) {
+      return;
+    }
+    final int page = Math.round(getScrollX() / (float) width);
+    if (page == NEXT) {
+      weekStartDay += 7;
+      final CalendarRowView recycled = rows[PREVIOUS];
+      rows[PREVIOUS] = rows[CURRENT];
+      rows[CURRENT] = rows[NEXT];
+      rows[NEXT] = recycled;
+      bindRow(recycled, weekStartDay + 7);
+    } else if (page == PREVIOUS) {
+      weekStartDay -= 7;
+      final CalendarRowView recycled = rows[NEXT];
+      rows[NEXT] = rows[CURRENT];
+      rows[CURRENT] = rows[PREVIOUS];
+      rows[PREVIOUS] = recycled;
+      bindRow(recycled, weekStartDay - 7);
+    }
+    positionRows();
+    scrollTo(width, 0);
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static java.util.Calendar.DECEMBER;
+import static java.util.Calendar.JANUARY;
+
+/**
+ * Overview of a whole year: twelve mini months in a 3x4 grid, drawn by this single view rather than
+ * by twelve inflated {@link MonthView}s.  Meant for fast navigation across multi-year ranges: wire
+ * {@link Listener#onMonthClicked(int, int)} to {@link CalendarPickerView#scrollToMonth(int, int)}.
+ * Must be initialized with {@link #init(int, java.util.Date, java.util.Date)}.
+ */
+public class CalendarYearView extends View {
+  private static final int COLUMNS = 3;
+  private static final int ROWS = 4;
+  private static final int MAX_WEEKS = 6;
+  /** Day numbers 1 through 31, so drawing never formats an int. */
+  private static final String[] DAY_LABELS = new String[32];
+
+  static {
+    for (int i = 1; i < DAY_LABELS.length; i++) {
+      DAY_LABELS[i] = Integer.toString(i);
+    }
+  }
+
+  public interface Listener {
+    /** {@code month} is a {@link Calendar#MONTH} value. */
+    void onMonthClicked(int year, int month);
+  }
+
+  private final String monthNamePattern;
+  private final String weekdayNamePattern;
+  private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Paint headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Paint dayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final int activeColor;
+  private final int unselectableColor;
+  private final int todayColor;
+  private final int monthPadding;
+
+  // The month model: the same epoch day arithmetic as the pickers' getMonthCells, one entry per
+  // month of the year.
+  private int year;
+  final Calendar today = Calendar.getInstance();
+  private final int[] firstDays = new int[12];
+  private final int[] lengths = new int[12];
+  private final int[] leadingDays = new int[12];
+  private final String[] titles = new String[12];
+  private final String[] headerLabels = new String[7];
+  private int minDay;
+  private int maxDay; // Exclusive.
+  private int todayDay;
+  private boolean initialized;
+
+  // Geometry and text metrics, cached per size change rather than computed while drawing.
+  private float monthWidth;
+  private float monthHeight;
+  private float cellSize;
+  private float titleHeight;
+  private float titleBaseline;
+  private float headerBaseline;
+  private float dayBaselineOffset;
+
+  private Listener listener;
+  private int downMonth = -1;
+
+  public CalendarYearView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    final Resources res = getResources();
+    activeColor = res.getColor(R.color.calendar_text_active);
+    unselectableColor = res.getColor(R.color.calendar_text_unselectable);
+    todayColor = res.getColor(R.color.calendar_selected_day_bg);
+    monthPadding = res.getDimensionPixelSize(R.dimen.calendar_year_month_padding);
+
+    titlePaint.setColor(activeColor);
+    titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+    titlePaint.setTextSize(res.getDimension(R.dimen.calendar_year_title_text));
+    headerPaint.setColor(activeColor);
+    headerPaint.setTextAlign(Paint.Align.CENTER);
+    headerPaint.setTextSize(res.getDimension(R.dimen.calendar_year_day_text));
+    dayPaint.setTextAlign(Paint.Align.CENTER);
+    dayPaint.setTextSize(res.getDimension(R.dimen.calendar_year_day_text));
+
+    monthNamePattern = context.getString(R.string.year_month_name_format);
+    weekdayNamePattern = context.getString(R.string.day_name_format);
+  }
+
+  public void init(int year, Date minDate, Date maxDate) {
+    init(year, minDate, maxDate, TimeZone.getDefault(), Calendar.getInstance().getFirstDayOfWeek());
+  }
+
+  /**
+   * @param year Year to show.
+   * @param minDate Earliest selectable date, inclusive.  Earlier days are greyed out.
+   * @param maxDate Latest selectable date, exclusive.  Later days are greyed out.
+   * @param timeZone Time zone the dates are interpreted in, as in the pickers' {@code init()}.
+   * @param firstDayOfWeek {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}.
+   */
+  public void init(int year, Date minDate, Date maxDate, TimeZone timeZone, int firstDayOfWeek) {
+    if (minDate == null || maxDate == null || timeZone == null) {
+      throw new IllegalArgumentException("Min/max dates and time zone must be non-null");
+    }
+    this.year = year;
+    minDay = EpochDays.of(minDate, timeZone);
+    maxDay = EpochDays.of(maxDate, timeZone);
+    todayDay = EpochDays.of(today.getTimeInMillis(), timeZone);
+
+    final DateFormat monthNameFormat = DateFormats.forPattern(monthNamePattern, timeZone);
+    final WeekLayout weekLayout =
+        new WeekLayout(firstDayOfWeek, DateFormats.forPattern(weekdayNamePattern, timeZone));
+    for (int c = 0; c < 7; c++) {
+      headerLabels[c] = weekLayout.getHeaderLabel(c).substring(0, 1);
+    }
+
+    final Calendar cal = Calendar.getInstance(timeZone);
+    for (int month = JANUARY; month <= DECEMBER; month++) {
+      final MonthGrid grid = MonthGridCache.get(year, month, firstDayOfWeek);
+      final int index = month - JANUARY;
+      firstDays[index] = grid.getFirstDay();
+      lengths[index] = grid.getLength();
+      leadingDays[index] = grid.getLeadingDays();
+      EpochDays.toCalendar(grid.getFirstDay(), cal);
+      titles[index] = monthNameFormat.format(cal.getTime());
+    }
+    initialized = true;
+    invalidate();
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  public int getYear() {
+    return year;
+  }
+
+  @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    final int width = MeasureSpec.getSize(widthMeasureSpec);
+    final float cell = (width / (float) COLUMNS - 2 * monthPadding) / 7;
+    final float height = ROWS * (2 * monthPadding + titleHeight() + (MAX_WEEKS + 1) * cell);
+    setMeasuredDimension(width, resolveSize(Math.round(height), heightMeasureSpec));
+  }
+
+  @Override protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    monthWidth = w / (float) COLUMNS;
+    monthHeight = h / (float) ROWS;
+    titleHeight = titleHeight();
+    cellSize = Math.min((monthWidth - 2 * monthPadding) / 7,
+        (monthHeight - 2 * monthPadding - titleHeight) / (MAX_WEEKS + 1));
+    titleBaseline = monthPadding - titlePaint.ascent();
+    headerBaseline = monthPadding + titleHeight + centeredBaseline(headerPaint);
+    dayBaselineOffset = centeredBaseline(dayPaint);
+  }
+
+  private float titleHeight() {
+    return titlePaint.descent() - titlePaint.ascent();
+  }
+
+  /** Returns the baseline that vertically centers {@code paint}'s text in a cell. */
+  private float centeredBaseline(Paint paint) {
+    return (cellSize - paint.ascent() - paint.descent()) / 2;
+  }
+
+  @Override protected void onDraw(Canvas canvas) {
+    if (!initialized) {
+      return;
+    }
+    for (int m = 0; m < 12; m++) {
+      final float left = (m % COLUMNS) * monthWidth + monthPadding;
+      final float top = (m / COLUMNS) * monthHeight;
+      canvas.drawText(titles[m], left, top + titleBaseline, titlePaint);
+      for (int c = 0; c < 7; c++) {
+        final float x = left + (c + 0.5f) * cellSize;
+        canvas.drawText(headerLabels[c], x, top + headerBaseline, headerPaint);
+      }
+
+      final float gridTop = top + monthPadding + titleHeight + cellSize;
+      final int firstDay = firstDays[m];
+      for (int d = 0, length = lengths[m]; d < length; d++) {
+        final int slot = leadingDays[m] + d;
+        final int day = firstDay + d;
+        final float x = left + (slot % 7 + 0.5f) * cellSize;
+        final float y = gridTop + (slot / 7) * cellSize + dayBaselineOffset;
+        dayPaint.setColor(dayColor(day));
+        canvas.drawText(DAY_LABELS[d + 1], x, y, dayPaint);
+      }
+    }
+  }
+
+  @Override public boolean onTouchEvent(MotionEvent event) {
+    if (!initialized) {
+      return false;
+    }
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_DOWN:
+        downMonth = monthAt(event.getX(), event.getY());
+        return true;
+      case MotionEvent.ACTION_UP:
+        final int month = monthAt(event.getX(), event.getY());
+        if (month != -1 && month == downMonth) {
+          downMonth = -1;
+          if (listener != null) {
+            listener.onMonthClicked(year, JANUARY + month);
+          }
+        }
+        return true;
+      case MotionEvent.ACTION_CANCEL:
+        downMonth = -1;
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  /** Returns the color of epoch day {@code day}'s number: today's, or greyed outside min/max. */
+  int dayColor(int day) {
+    if (day == todayDay) {
+      return todayColor;
+    }
+    return day >= minDay && day < maxDay ? activeColor : unselectableColor;
+  }
+
+  /** Returns the month index (0-11) under the given point, or -1. */
+  int monthAt(float x, float y) {
+    final int column = (int) (x / monthWidth);
+    final int row = (int) (y / monthHeight);
+    if (x < 0 || y < 0 || column >= COLUMNS || row >= ROWS) {
+      return -1;
+    }
+    return row * COLUMNS + column;
+  }
+}
@@ -0,0 +1,40 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Creates and binds day cells that need more than the stock {@link CalendarCellView}, such as a
+ * day and a price.  Each row of a month keeps one {@link ViewHolder} per column and view type, so
+ * a holder's views are found once, when it's created, and reused for every month the row shows.
+ * <p>
+ * Binders own their cells' looks: the stock styling is skipped, and keyboard focus and heatmap
+ * shading are only shown by item views that are {@link CalendarCellView}s.  The library keeps each
+ * item view's tag for its cell's descriptor, so don't set it.
+ */
+public interface CellBinder {
+  /** Number of view types {@link #getViewType} returns.  At least 1.  Must not change. */
+  int getViewTypeCount();
+
+  /** Returns the view type of {@code cell}, from 0 to {@link #getViewTypeCount()} - 1. */
+  int getViewType(MonthCellDescriptor cell);
+
+  /** Creates a cell of {@code viewType} for {@code row}.  Don't attach it: the row does. */
+  ViewHolder createViewHolder(ViewGroup row, int viewType);
+
+  /** Shows {@code cell} in {@code holder}, created for the cell's view type.  Called per bind. */
+  void bindViewHolder(ViewHolder holder, MonthCellDescriptor cell);
+
+  /** A cell's view, and whichever of its children a binder wants at hand: subclass to add them. */
+  class ViewHolder {
+    public final View itemView;
+
+    public ViewHolder(View itemView) {
+      if (itemView == null) {
+        throw new IllegalArgumentException("Item view must be non-null");
+      }
+      this.itemView = itemView;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.graphics.Rect;
+import android.view.KeyEvent;
+import android.view.View;
+import android.widget.AbsListView;
+import java.util.List;
+
+/**
+ * Keyboard focus over the days of a picker's months.  The focused day is an epoch day moved by
+ * arithmetic, a day sideways or a week up or down, instead of by the framework's focus search
+ * through the rows of every visible month.  Moving focus restyles only the cells losing and
+ * gaining it, and scrolls the list when the new day isn't fully on screen.
+ */
+final class DayFocus {
+  static final int NO_DAY = CalendarCells.NO_DAY;
+  private static final int SCROLL_DURATION = 150;
+
+  private final AbsListView list;
+  private final Rect cellBounds = new Rect();
+  private CalendarModel model;
+  private List<MonthDescriptor> months;
+  private int[] monthVersions;
+  private int day = NO_DAY;
+  private int monthIndex = -1;
+
+  DayFocus(AbsListView list) {
+    this.list = list;
+  }
+
+  /** Drops focus and switches to a newly initialized picker's months. */
+  void reset(CalendarModel model, List<MonthDescriptor> months, int[] monthVersions) {
+    this.model = model;
+    this.months = months;
+    this.monthVersions = monthVersions;
+    day = NO_DAY;
+    monthIndex = -1;
+  }
+
+  /** The focused epoch day, or {@link #NO_DAY}. */
+  int getDay() {
+    return day;
+  }
+
+  /** Position in the picker's months of the focused day's month, or -1. */
+  int getMonthIndex() {
+    return monthIndex;
+  }
+
+  /** Returns how many days the arrow key {@code keyCode} moves focus, or 0 for other keys. */
+  static int offsetFor(int keyCode) {
+    switch (keyCode) {
+      case KeyEvent.KEYCODE_DPAD_LEFT:
+        return -1;
+      case KeyEvent.KEYCODE_DPAD_RIGHT:
+        return 1;
+      case KeyEvent.KEYCODE_DPAD_UP:
+        return -7;
+      case KeyEvent.KEYCODE_DPAD_DOWN:
+        return 7;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Moves focus {@code offset} days from the focused day.  Returns false, leaving focus where it
+   * is, if nothing is focused or the target isn't a selectable day.
+   */
+  boolean moveBy(int offset) {
+    if (day == NO_DAY) {
+      return false;
+    }
+    final int target = day + offset;
+    if (!CalendarCells.betweenDates(target, model.getMinDay(), model.getMaxDay())) {
+      return false;
+    }
+    // A step of at most a week leaves the month or crosses into a neighbor, so no search.
+    int index = monthIndex;
+    while (target < model.getGrid(index).getFirstDay()) {
+      index--;
+    }
+    while (target >= model.getGrid(index).getFirstDay() + model.getGrid(index).getLength()) {
+      index++;
+    }
+    setFocus(target, index);
+    return true;
+  }
+
+  /**
+   * Focuses {@code epochDay}, clamped to the selectable days.  Returns false if the picker has no
+   * months.
+   */
+  boolean focus(int epochDay) {
+    if (model == null || months.isEmpty()) {
+      return false;
+    }
+    final int target = Math.max(model.getMinDay(), Math.min(epochDay, model.getMaxDay() - 1));
+    setFocus(target, model.indexOf(target));
+    return true;
+  }
+
+  /** Removes focus from every day. */
+  void clear() {
+    setFocus(NO_DAY, -1);
+  }
+
+  /** Shows the current focus on {@code monthView}, just bound to the month at {@code position}. */
+  void bind(MonthView monthView, int position) {
+    monthView.setFocusedDay(position == monthIndex ? day : NO_DAY);
+  }
+
+  private void setFocus(int newDay, int newIndex) {
+    final int oldIndex = monthIndex;
+    day = newDay;
+    monthIndex = newIndex;
+    if (oldIndex >= 0) {
+      updateMonth(oldIndex);
+    }
+    if (newIndex >= 0 && newIndex != oldIndex) {
+      updateMonth(newIndex);
+    }
+    if (newIndex >= 0) {
+      scrollToFocus();
+    }
+  }
+
+  /** Restyles the on-screen view of the month at {@code index}, if any. */
+  private void updateMonth(int index) {
+    // Snapshots of the month show the old focus.
+    monthVersions[index]++;
+    final MonthView monthView = monthViewAt(index);
+    if (monthView != null) {
+      bind(monthView, index);
+    }
+  }
+
+  private void scrollToFocus() {
+    final MonthView monthView = monthViewAt(monthIndex);
+    if (monthView == null) {
+      list.smoothScrollToPosition(monthIndex);
+      return;
+    }
+    final int cellIndex = monthView.indexOfDay(day);
+    if (cellIndex < 0) {
+      return;
+    }
+    monthView.getCellBounds(cellIndex, cellBounds);
+    final int top = monthView.getTop() + cellBounds.top;
+    final int bottom = monthView.getTop() + cellBounds.bottom;
+    final int listTop = list.getPaddingTop();
+    final int listBottom = list.getHeight() - list.getPaddingBottom();
+    if (top < listTop) {
+      list.smoothScrollBy(top - listTop, SCROLL_DURATION);
+    } else if (bottom > listBottom) {
+      list.smoothScrollBy(bottom - listBottom, SCROLL_DURATION);
+    }
+  }
+
+  private MonthView monthViewAt(int index) {
+    final View child = list.getChildAt(index - list.getFirstVisiblePosition());
+    return child instanceof MonthView ? (MonthView) child : null;
+  }
+}
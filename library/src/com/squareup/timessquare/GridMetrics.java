@@ -0,0 +1,53 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+/**
+ * Cell sizes shared by the month grids of a picker.  Every month in a picker is as wide, so the
+ * sizes are computed by the first grid measured at a width and reused by the others.  Each grid
+ * then measures its rows with the same exact specs every time, so a recycled row never has to
+ * measure its cells again.
+ */
+final class GridMetrics {
+  /** Aspect ratio set on the picker, or 0 for each grid's own {@code cellAspectRatio}. */
+  private float aspectRatio;
+  /** Grid width and aspect ratio the cell sizes were computed for. */
+  private int width = -1;
+  private float ratio;
+  private int cellWidth;
+  private int cellHeight;
+
+  float getAspectRatio() {
+    return aspectRatio;
+  }
+
+  /** Width over height of every cell, or 0 to use each grid's own attribute. */
+  void setAspectRatio(float aspectRatio) {
+    if (!(aspectRatio >= 0) || Float.isInfinite(aspectRatio)) {
+      throw new IllegalArgumentException("Invalid aspect ratio: " + aspectRatio);
+    }
+    this.aspectRatio = aspectRatio;
+  }
+
+  /**
+   * Sizes cells for a grid {@code width} wide, with {@code gridAspectRatio} unless the picker set
+   * a ratio.  A no-op if they're already sized for both.
+   */
+  void update(int width, float gridAspectRatio) {
+    final float ratio = aspectRatio > 0 ? aspectRatio : gridAspectRatio;
+    if (width == this.width && ratio == this.ratio) {
+      return;
+    }
+    this.width = width;
+    this.ratio = ratio;
+    cellWidth = width / 7;
+    cellHeight = Math.round(cellWidth / ratio);
+  }
+
+  int getCellWidth() {
+    return cellWidth;
+  }
+
+  int getCellHeight() {
+    return cellHeight;
+  }
+}
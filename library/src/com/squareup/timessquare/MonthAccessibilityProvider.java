@@ -0,0 +1,208 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+import java.text.DateFormat;
+
+/**
+ * Exposes the days of a {@link MonthView} to accessibility services as virtual views, in the
+ * manner of the support library's ExploreByTouchHelper.  A day's virtual view id is its index in
+ * the month's grid, {@code week * 7 + column}, and its bounds are computed from the row geometry
+ * rather than read from a cell view, so the nodes don't depend on how the cells are drawn.
+ * <p>
+ * Only created once an accessibility service asks the month for its provider, so sighted users
+ * never pay for it.  Requires API 16.
+ */
+final class MonthAccessibilityProvider extends AccessibilityNodeProvider {
+  private static final int INVALID_ID = Integer.MIN_VALUE;
+  private static final String CELL_CLASS_NAME = CalendarCellView.class.getName();
+
+  private final MonthView host;
+  private final Rect bounds = new Rect();
+  private final int[] hostLocation = new int[2];
+  /** Content description of each cell, formatted on first use.  Cleared on every rebind. */
+  private final String[] descriptions = new String[6 * 7];
+  private DateFormat dateFormat;
+  private int focusedId = INVALID_ID;
+  private int hoveredId = INVALID_ID;
+
+  MonthAccessibilityProvider(MonthView host) {
+    this.host = host;
+  }
+
+  /** Sets the format of the days' content descriptions.  Null for the default medium format. */
+  void setDateFormat(DateFormat dateFormat) {
+    if (this.dateFormat != dateFormat) {
+      this.dateFormat = dateFormat;
+      invalidate();
+    }
+  }
+
+  /** Forgets the cached descriptions and focus, after the host was bound to other cells. */
+  void invalidate() {
+    for (int i = 0; i < descriptions.length; i++) {
+      descriptions[i] = null;
+    }
+    focusedId = INVALID_ID;
+    hoveredId = INVALID_ID;
+  }
+
+  @Override public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+    if (virtualViewId == View.NO_ID) {
+      final AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(host);
+      host.onInitializeAccessibilityNodeInfo(info);
+      for (int i = 0, count = host.getCellCount(); i < count; i++) {
+        info.addChild(host, i);
+      }
+      return info;
+    }
+    final MonthCellDescriptor cell = cellFor(virtualViewId);
+    if (cell == null) {
+      return null;
+    }
+    final AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain();
+    info.setSource(host, virtualViewId);
+    info.setParent(host);
+    info.setPackageName(host.getContext().getPackageName());
+    info.setClassName(CELL_CLASS_NAME);
+    info.setContentDescription(describe(virtualViewId, cell));
+    info.setEnabled(cell.isCurrentMonth());
+    info.setClickable(cell.isSelectable());
+    info.setSelected(cell.isSelected());
+    info.setVisibleToUser(true);
+    if (cell.isSelectable()) {
+      info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+    }
+    if (focusedId == virtualViewId) {
+      info.setAccessibilityFocused(true);
+      info.addAction(AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS);
+    } else {
+      info.addAction(AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS);
+    }
+
+    host.getCellBounds(virtualViewId, bounds);
+    info.setBoundsInParent(bounds);
+    host.getLocationOnScreen(hostLocation);
+    bounds.offset(hostLocation[0], hostLocation[1]);
+    info.setBoundsInScreen(bounds);
+    return info;
+  }
+
+  @Override public boolean performAction(int virtualViewId, int action, Bundle arguments) {
+    if (virtualViewId == View.NO_ID) {
+      return host.performAccessibilityAction(action, arguments);
+    }
+    final MonthCellDescriptor cell = cellFor(virtualViewId);
+    if (cell == null) {
+      return false;
+    }
+    switch (action) {
+      case AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS:
+        if (focusedId == virtualViewId) {
+          return false;
+        }
+        if (focusedId != INVALID_ID) {
+          sendEvent(focusedId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+        }
+        focusedId = virtualViewId;
+        host.invalidate();
+        sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+        return true;
+      case AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS:
+        if (focusedId != virtualViewId) {
+          return false;
+        }
+        focusedId = INVALID_ID;
+        host.invalidate();
+        sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+        return true;
+      case AccessibilityNodeInfo.ACTION_CLICK:
+        if (!cell.isSelectable()) {
+          return false;
+        }
+        sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+        host.performCellClick(cell);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Moves the hovered virtual view under a touch-exploration hover event.  Returns whether the
+   * event was over a day.
+   */
+  boolean dispatchHoverEvent(MotionEvent event) {
+    switch (event.getAction()) {
+      case MotionEvent.ACTION_HOVER_ENTER:
+      case MotionEvent.ACTION_HOVER_MOVE:
+        final int id = host.cellIndexAt((int) event.getX(), (int) event.getY());
+        setHovered(id < 0 ? INVALID_ID : id);
+        return id >= 0;
+      case MotionEvent.ACTION_HOVER_EXIT:
+        if (hoveredId == INVALID_ID) {
+          return false;
+        }
+        setHovered(INVALID_ID);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void setHovered(int virtualViewId) {
+    if (hoveredId == virtualViewId) {
+      return;
+    }
+    final int previous = hoveredId;
+    hoveredId = virtualViewId;
+    // Enter before exit, as the framework orders them.
+    if (virtualViewId != INVALID_ID) {
+      sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_HOVER_ENTER);
+    }
+    if (previous != INVALID_ID) {
+      sendEvent(previous, AccessibilityEvent.TYPE_VIEW_HOVER_EXIT);
+    }
+  }
+
+  private void sendEvent(int virtualViewId, int eventType) {
+    final ViewParent parent = host.getParent();
+    final MonthCellDescriptor cell = cellFor(virtualViewId);
+    if (parent == null || cell == null) {
+      return;
+    }
+    final AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+    event.setSource(host, virtualViewId);
+    event.setPackageName(host.getContext().getPackageName());
+    event.setClassName(CELL_CLASS_NAME);
+    event.setContentDescription(describe(virtualViewId, cell));
+    event.setEnabled(cell.isCurrentMonth());
+    parent.requestSendAccessibilityEvent(host, event);
+  }
+
+  private MonthCellDescriptor cellFor(int virtualViewId) {
+    if (virtualViewId < 0 || virtualViewId >= host.getCellCount()) {
+      return null;
+    }
+    return host.getCell(virtualViewId);
+  }
+
+  String describe(int virtualViewId, MonthCellDescriptor cell) {
+    String description = descriptions[virtualViewId];
+    if (description == null) {
+      if (dateFormat == null) {
+        dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+      }
+      description = dateFormat.format(cell.getDate());
+      descriptions[virtualViewId] = description;
+    }
+    return description;
+  }
+}
@@ -0,0 +1,147 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered {@link MonthView} grids, reused while a picker scrolls so months that scroll back in are
+ * blitted rather than redrawn cell by cell.  Snapshots are keyed by the month's position in the
+ * picker, and a snapshot is valid for a given size and for the version of its month at that
+ * position in the picker's {@link #setVersions(int[]) versions}, which the picker bumps whenever
+ * the state of any of the month's cells changes.  The least recently drawn snapshots are evicted
+ * once their total size exceeds the budget, an eighth of the heap by default.
+ */
+final class MonthSnapshotCache {
+  private static final int BYTES_PER_PIXEL = 4; // ARGB_8888
+
+  private final Map<Integer, Snapshot> snapshots =
+      new LinkedHashMap<Integer, Snapshot>(16, 0.75f, true);
+  private final Canvas canvas = new Canvas();
+  private final long maxBytes;
+  private int[] versions = new int[0];
+  private long bytes;
+  private boolean scrolling;
+
+  MonthSnapshotCache() {
+    this(Runtime.getRuntime().maxMemory() / 8);
+  }
+
+  MonthSnapshotCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** Snapshots are only drawn while scrolling, when cells can't be pressed or focused. */
+  boolean isScrolling() {
+    return scrolling;
+  }
+
+  void setScrolling(boolean scrolling) {
+    this.scrolling = scrolling;
+  }
+
+  /**
+   * Switches to a newly initialized picker's month versions, indexed by position.  Drops every
+   * snapshot, since positions may now refer to other months.
+   */
+  void setVersions(int[] versions) {
+    this.versions = versions;
+    clear();
+  }
+
+  /**
+   * Returns the snapshot of the month at {@code position} at its current version and the given
+   * size, or null.
+   */
+  Bitmap get(int position, int width, int height) {
+    final Snapshot snapshot = snapshots.get(position);
+    if (snapshot == null) {
+      return null;
+    }
+    final Bitmap bitmap = snapshot.bitmap;
+    if (snapshot.version != versionOf(position)
+        || bitmap.getWidth() != width
+        || bitmap.getHeight() != height) {
+      remove(position);
+      return null;
+    }
+    return bitmap;
+  }
+
+  /**
+   * Returns a blank bitmap to render a snapshot into, or null if one that size doesn't fit the
+   * budget (or the heap).
+   */
+  Bitmap newBitmap(int width, int height) {
+    final long size = (long) width * height * BYTES_PER_PIXEL;
+    if (size == 0 || size > maxBytes) {
+      return null;
+    }
+    trimTo(maxBytes - size);
+    try {
+      return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    } catch (OutOfMemoryError e) {
+      clear();
+      return null;
+    }
+  }
+
+  /** Returns a canvas that draws into {@code bitmap}.  Only valid until the next call. */
+  Canvas canvasFor(Bitmap bitmap) {
+    canvas.setBitmap(bitmap);
+    return canvas;
+  }
+
+  /** Stores {@code bitmap} as the snapshot of the month at {@code position}. */
+  void put(int position, Bitmap bitmap) {
+    if (position < 0 || position >= versions.length) {
+      return;
+    }
+    remove(position);
+    final Snapshot snapshot = new Snapshot(bitmap, versions[position]);
+    snapshots.put(position, snapshot);
+    bytes += snapshot.size;
+    trimTo(maxBytes);
+  }
+
+  void clear() {
+    snapshots.clear();
+    bytes = 0;
+  }
+
+  private int versionOf(int position) {
+    return position >= 0 && position < versions.length ? versions[position] : -1;
+  }
+
+  private void remove(int position) {
+    final Snapshot snapshot = snapshots.remove(position);
+    if (snapshot != null) {
+      bytes -= snapshot.size;
+    }
+  }
+
+  private void trimTo(long budget) {
+    // Iteration order is least recently used first.  Bitmaps aren't recycled: a display list may
+    // still reference one, so it's left to the garbage collector.
+    final Iterator<Snapshot> it = snapshots.values().iterator();
+    while (bytes > budget && it.hasNext()) {
+      bytes -= it.next().size;
+      it.remove();
+    }
+  }
+
+  private static class Snapshot {
+    final Bitmap bitmap;
+    final int version;
+    final long size;
+
+    Snapshot(Bitmap bitmap, int version) {
+      this.bitmap = bitmap;
+      this.version = version;
+      size = (long) bitmap.getWidth() * bitmap.getHeight() * BYTES_PER_PIXEL;
+    }
+  }
+}
@@ -2,9 +2,19 @@
 package com.squareup.timessquare;
 
 import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.widget.CheckedTextView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
@@ -13,22 +23,33 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.TimeZone;
 
-import static java.util.Calendar.DATE;
-import static java.util.Calendar.DAY_OF_MONTH;
-import static java.util.Calendar.DAY_OF_WEEK;
-import static java.util.Calendar.HOUR_OF_DAY;
-import static java.util.Calendar.MILLISECOND;
-import static java.util.Calendar.MINUTE;
 import static java.util.Calendar.MONTH;
-import static java.util.Calendar.SECOND;
-import static java.util.Calendar.SUNDAY;
 import static java.util.Calendar.YEAR;
 
 public class MonthView extends LinearLayout {
   private TextView title;
   private CalendarGridView grid;
   private Listener listener;
+  private WeekLayout weekLayout;
+  private int numRows;
+  private MonthDescriptor month;
+  private List<List<MonthCellDescriptor>> cells;
+  private MonthSnapshotCache snapshotCache;
+  private int snapshotPosition;
+  private int focusedDay = DayFocus.NO_DAY;
+  private Heatmap heatmap;
+  private CellBinder cellBinder;
+  private int heatmapFirstDay;
+  private DateFormat accessibilityDateFormat;
+  /** Whether the last bind styled the cells in full, or left that to {@link #decorate()}. */
+  private boolean decorated;
+  /** Flat text colors of undecorated cells, resolved on first use. */
+  private ColorStateList plainTextColor;
+  private ColorStateList plainUnselectableTextColor;
+  /** Created when an accessibility service first asks for it.  API 16 and up only. */
+  private MonthAccessibilityProvider accessibilityProvider;
 
   public static MonthView create(ViewGroup parent, LayoutInflater inflater,
       DateFormat weekdayNameFormat, Listener listener, Calendar today) {
@@ -36,20 +57,19 @@ public class MonthView extends LinearLayout {
     return create(R.layout.month, parent, inflater, weekdayNameFormat, listener, today);
   }
 
+  /** Weeks start on the first day of the week of {@code today}'s locale. */
   public static MonthView create(int layoutId, ViewGroup parent, LayoutInflater inflater,
       DateFormat weekdayNameFormat, Listener listener, Calendar today) {
 
-    final MonthView view = (MonthView) inflater.inflate(layoutId, parent, false);
+    return create(layoutId, parent, inflater,
+        new WeekLayout(today.getFirstDayOfWeek(), weekdayNameFormat), listener);
+  }
 
-    final int originalDayOfWeek = today.get(Calendar.DAY_OF_WEEK);
+  static MonthView create(int layoutId, ViewGroup parent, LayoutInflater inflater,
+      WeekLayout weekLayout, Listener listener) {
 
-    final CalendarRowView headerRow = (CalendarRowView) view.grid.getChildAt(0);
-    for (int c = Calendar.SUNDAY; c <= Calendar.SATURDAY; c++) {
-      today.set(Calendar.DAY_OF_WEEK, c);
-      final TextView textView = (TextView) headerRow.getChildAt(c - 1);
-      textView.setText(weekdayNameFormat.format(today.getTime()));
-    }
-    today.set(Calendar.DAY_OF_WEEK, originalDayOfWeek);
+    final MonthView view = (MonthView) inflater.inflate(layoutId, parent, false);
+    view.setWeekLayout(weekLayout);
     view.listener = listener;
     return view;
   }
@@ -74,6 +94,27 @@ public class MonthView extends LinearLayout {
     }
   }
 
+  /** Sends clicks on days to {@code listener} from the next {@code init()}. */
+  void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Labels the header row for {@code weekLayout}.  A no-op if the view already shows it, so
+   * adapters can call this on every bind.
+   */
+  void setWeekLayout(WeekLayout weekLayout) {
+    if (this.weekLayout == weekLayout) {
+      return;
+    }
+    this.weekLayout = weekLayout;
+    final CalendarRowView headerRow = (CalendarRowView) grid.getChildAt(0);
+    for (int c = 0; c < 7; c++) {
+      final TextView textView = (TextView) headerRow.getChildAt(c);
+      textView.setText(weekLayout.getHeaderLabel(c));
+    }
+  }
+
   /**
    * Simple form of init for drawing a static calendar with nothing selectable.
    */
@@ -82,32 +123,26 @@ public class MonthView extends LinearLayout {
         monthNameFormat.format(startCal.getTime()));
 
     Calendar cal = Calendar.getInstance();
-    cal.setTime(startCal.getTime());
-    cal.set(HOUR_OF_DAY, 0);
-    cal.set(MINUTE, 0);
-    cal.set(SECOND, 0);
-    cal.set(MILLISECOND, 0);
-
+    final int weekStart =
+        weekLayout != null ? weekLayout.getFirstDayOfWeek() : cal.getFirstDayOfWeek();
+    final MonthGrid grid = MonthGridCache.get(month.getYear(), month.getMonth(), weekStart);
     List<List<MonthCellDescriptor>> cells = new ArrayList<List<MonthCellDescriptor>>();
-    cal.set(DAY_OF_MONTH, 1);
-    int firstDayOfWeek = cal.get(DAY_OF_WEEK);
-    cal.add(DATE, SUNDAY - firstDayOfWeek);
-    while ((cal.get(MONTH) < month.getMonth() + 1 || cal.get(YEAR) < month.getYear()) //
-        && cal.get(YEAR) <= month.getYear()) {
-      Logr.d("Building week row starting at %s", cal.getTime());
+    final TimeZone timeZone = cal.getTimeZone();
+    int day = grid.getFirstCellDay();
+    for (int w = 0, numWeeks = grid.getWeekCount(); w < numWeeks; w++) {
       List<MonthCellDescriptor> weekCells = new ArrayList<MonthCellDescriptor>();
       cells.add(weekCells);
       for (int c = 0; c < 7; c++) {
-        Date date = cal.getTime();
-        boolean isCurrentMonth = cal.get(MONTH) == month.getMonth();
+        Date date = new Date(EpochDays.toMillis(day, timeZone));
+        boolean isCurrentMonth = grid.isCurrentMonth(day);
         boolean isSelected = false;
         boolean isSelectable = false;
         boolean isToday = false;
-        int value = cal.get(DAY_OF_MONTH);
+        int value = grid.getDayOfMonth(day);
         MonthCellDescriptor cell =
             new MonthCellDescriptor(date, isCurrentMonth, isSelectable, isSelected, isToday, value);
+        cell.setEpochDay(day++);
         weekCells.add(cell);
-        cal.add(DATE, 1);
       }
     }
 
@@ -115,11 +150,26 @@ public class MonthView extends LinearLayout {
   }
 
   public void init(MonthDescriptor month, List<List<MonthCellDescriptor>> cells) {
+    init(month, cells, true);
+  }
+
+  /**
+   * Binds {@code cells}, styling them in full only if {@code decorate}.  Otherwise only the day
+   * numbers and the states the background selector reads are bound, with flat text colors, and
+   * {@link #decorate()} finishes the job.  Pickers bind that way while flinging, when a month may
+   * be on screen for only a frame or two.
+   */
+  void init(MonthDescriptor month, List<List<MonthCellDescriptor>> cells, boolean decorate) {
     Logr.d("Initializing MonthView for %s", month);
     long start = System.currentTimeMillis();
+    this.month = month;
+    this.cells = cells;
     title.setText(month.getLabel());
+    if (accessibilityProvider != null) {
+      accessibilityProvider.invalidate();
+    }
 
-    final int numRows = cells.size();
+    numRows = cells.size();
     for (int i = 0; i < 6; i++) {
       CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(i + 1);
       weekRow.setListener(listener);
@@ -128,26 +178,310 @@ public class MonthView extends LinearLayout {
         List<MonthCellDescriptor> week = cells.get(i);
         for (int c = 0; c < week.size(); c++) {
           MonthCellDescriptor cell = week.get(c);
+          if (cellBinder != null) {
+            styleOverlay(weekRow.bindCell(c, cell), cell);
+            continue;
+          }
           CheckedTextView cellView = (CheckedTextView) weekRow.getChildAt(c);
           cellView.setText(Integer.toString(cell.getValue()));
-          stylizeCellView(cellView, cell);
+          if (decorate) {
+            styleCell(cellView, cell);
+          } else {
+            styleCellPlain(cellView, cell);
+          }
           cellView.setTag(cell);
         }
       } else {
         weekRow.setVisibility(hideEmptyWeeks() ? GONE : VISIBLE);
       }
     }
+    decorated = decorate;
     Logr.d("MonthView.init took %d ms", System.currentTimeMillis() - start);
   }
 
+  /**
+   * Restyles the cells bound by the last {@link #init(MonthDescriptor, java.util.List)} from their
+   * descriptors' current state, without touching the title or day numbers.  Used for partial
+   * rebinds after a selection change.
+   */
+  void refreshCells() {
+    for (int i = 0; i < numRows; i++) {
+      CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(i + 1);
+      for (int c = 0, numCells = weekRow.getChildCount(); c < numCells; c++) {
+        restyleCell(weekRow, c);
+      }
+    }
+    decorated = true;
+  }
+
+  /**
+   * Styles the cells in full if the last bind left that out.  Returns whether it did anything.
+   */
+  boolean decorate() {
+    if (decorated) {
+      return false;
+    }
+    refreshCells();
+    return true;
+  }
+
+  /** Restyles the cell showing {@code epochDay}, if any, from its descriptor's current state. */
+  void refreshCell(int epochDay) {
+    final int index = indexOfDay(epochDay);
+    if (index < 0) {
+      return;
+    }
+    restyleCell((CalendarRowView) grid.getChildAt(index / 7 + 1), index % 7);
+  }
+
+  /** Restyles, or rebinds with the {@link CellBinder}, the cell in {@code column}. */
+  private void restyleCell(CalendarRowView weekRow, int column) {
+    final View cellView = weekRow.getChildAt(column);
+    final MonthCellDescriptor cell = (MonthCellDescriptor) cellView.getTag();
+    if (cellBinder != null) {
+      styleOverlay(weekRow.bindCell(column, cell), cell);
+    } else {
+      styleCell((CheckedTextView) cellView, cell);
+    }
+  }
+
+  /** Returns the grid index of the cell showing {@code epochDay}, or -1 if it isn't shown. */
+  int indexOfDay(int epochDay) {
+    if (numRows == 0 || epochDay == DayFocus.NO_DAY) {
+      return -1;
+    }
+    // Cells are consecutive days, so the cell's position follows from the first one's day.
+    final int offset = epochDay - getCell(0).getEpochDay();
+    return offset >= 0 && offset < numRows * 7 ? offset : -1;
+  }
+
+  /**
+   * Shows keyboard focus on {@code epochDay}, or on no cell for {@link DayFocus#NO_DAY} or a day
+   * this month doesn't show.  Only the cells losing and gaining focus are restyled.
+   */
+  void setFocusedDay(int epochDay) {
+    if (focusedDay == epochDay) {
+      return;
+    }
+    final int oldDay = focusedDay;
+    focusedDay = epochDay;
+    if (decorated) {
+      // Otherwise decorate() shows it, along with the rest of the styling.
+      refreshCell(oldDay);
+      refreshCell(epochDay);
+    }
+  }
+
+  /** Returns the descriptor of the cell at ({@code x}, {@code y}) in this view, or null. */
+  MonthCellDescriptor cellAt(int x, int y) {
+    final int index = cellIndexAt(x, y);
+    return index < 0 ? null : getCell(index);
+  }
+
+  /**
+   * Returns the grid index, {@code week * 7 + column}, of the cell at ({@code x}, {@code y}) in
+   * this view, or -1.  Computed from the row geometry, not from the cell views.
+   */
+  int cellIndexAt(int x, int y) {
+    x -= grid.getLeft();
+    y -= grid.getTop();
+    for (int i = 0; i < numRows; i++) {
+      final CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(i + 1);
+      if (y >= weekRow.getTop() && y < weekRow.getBottom()) {
+        final int cellWidth = cellWidth(weekRow);
+        final int rowX = x - weekRow.getLeft();
+        if (cellWidth <= 0 || rowX < 0 || rowX >= 7 * cellWidth) {
+          return -1;
+        }
+        return i * 7 + rowX / cellWidth;
+      }
+    }
+    return -1;
+  }
+
+  /** Sets {@code outRect} to the bounds, in this view, of the cell at grid {@code index}. */
+  void getCellBounds(int index, Rect outRect) {
+    final CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(index / 7 + 1);
+    final int cellWidth = cellWidth(weekRow);
+    final int left = grid.getLeft() + weekRow.getLeft() + (index % 7) * cellWidth;
+    final int top = grid.getTop() + weekRow.getTop();
+    outRect.set(left, top, left + cellWidth, top + weekRow.getHeight());
+  }
+
+  /** Rows lay their cells out at multiples of a seventh of their unpadded width. */
+  private static int cellWidth(CalendarRowView weekRow) {
+    return (weekRow.getWidth() - weekRow.getPaddingLeft() - weekRow.getPaddingRight()) / 7;
+  }
+
+  /** Number of cells bound by the last {@link #init(MonthDescriptor, java.util.List)}. */
+  int getCellCount() {
+    return numRows * 7;
+  }
+
+  /** Returns the descriptor of the cell at grid {@code index}, {@code week * 7 + column}. */
+  MonthCellDescriptor getCell(int index) {
+    return cells.get(index / 7).get(index % 7);
+  }
+
+  /** Clicks {@code cell} as if its view had been tapped. */
+  void performCellClick(MonthCellDescriptor cell) {
+    if (listener != null) {
+      listener.handleClick(cell);
+    }
+  }
+
+  /** Sets the format of the days' spoken descriptions.  Null for the default medium format. */
+  void setAccessibilityDateFormat(DateFormat dateFormat) {
+    accessibilityDateFormat = dateFormat;
+    if (accessibilityProvider != null) {
+      accessibilityProvider.setDateFormat(dateFormat);
+    }
+  }
+
+  @Override public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+      return super.getAccessibilityNodeProvider();
+    }
+    if (accessibilityProvider == null) {
+      accessibilityProvider = new MonthAccessibilityProvider(this);
+      accessibilityProvider.setDateFormat(accessibilityDateFormat);
+    }
+    return accessibilityProvider;
+  }
+
+  @Override protected boolean dispatchHoverEvent(MotionEvent event) {
+    if (accessibilityProvider != null && isTouchExplorationEnabled()
+        && accessibilityProvider.dispatchHoverEvent(event)) {
+      return true;
+    }
+    return super.dispatchHoverEvent(event);
+  }
+
+  private boolean isTouchExplorationEnabled() {
+    final AccessibilityManager manager =
+        (AccessibilityManager) getContext().getSystemService(Context.ACCESSIBILITY_SERVICE);
+    return manager != null && manager.isEnabled() && manager.isTouchExplorationEnabled();
+  }
+
+  /**
+   * Shades days with {@code heatmap}, whose counts start at epoch day {@code firstDay}, from the
+   * next {@link #init(MonthDescriptor, java.util.List)} or {@link #refreshCells()}.  May be null.
+   */
+  void setHeatmap(Heatmap heatmap, int firstDay) {
+    this.heatmap = heatmap;
+    heatmapFirstDay = firstDay;
+  }
+
+  /**
+   * Binds day cells with {@code binder}, or the stock cells for null, from the next {@link
+   * #init(MonthDescriptor, java.util.List)}.  Binders are always bound in full, even mid-fling.
+   */
+  void setCellBinder(CellBinder binder) {
+    if (cellBinder == binder) {
+      return;
+    }
+    cellBinder = binder;
+    for (int i = 1, count = grid.getChildCount(); i < count; i++) {
+      ((CalendarRowView) grid.getChildAt(i)).setCellBinder(binder);
+    }
+  }
+
+  /** Sizes cells from {@code metrics}, shared with the picker's other months.  May be null. */
+  void setGridMetrics(GridMetrics metrics) {
+    grid.setGridMetrics(metrics);
+  }
+
+  /** Measures the grid again after its {@link GridMetrics} changed. */
+  void gridMetricsChanged() {
+    grid.requestLayout();
+  }
+
+  /**
+   * Enables drawing from {@code snapshotCache} while the owning picker scrolls, as the month at
+   * {@code position}.  The cache may be null.
+   */
+  void setSnapshotCache(MonthSnapshotCache snapshotCache, int position) {
+    this.snapshotCache = snapshotCache;
+    snapshotPosition = position;
+  }
+
+  @Override protected void dispatchDraw(Canvas canvas) {
+    if (snapshotCache == null || !snapshotCache.isScrolling() || month == null) {
+      super.dispatchDraw(canvas);
+      return;
+    }
+    final int width = getWidth();
+    final int height = getHeight();
+    Bitmap snapshot = snapshotCache.get(snapshotPosition, width, height);
+    if (snapshot == null) {
+      // Snapshots are only valid once decorated; decorating doesn't bump the month's version.
+      snapshot = decorated ? snapshotCache.newBitmap(width, height) : null;
+      if (snapshot == null) {
+        super.dispatchDraw(canvas);
+        return;
+      }
+      super.dispatchDraw(snapshotCache.canvasFor(snapshot));
+      snapshotCache.put(snapshotPosition, snapshot);
+    }
+    canvas.drawBitmap(snapshot, 0, 0, null);
+  }
+
+  private void styleCell(CheckedTextView cellView, MonthCellDescriptor cell) {
+    stylizeCellView(cellView, cell);
+    styleOverlay(cellView, cell);
+  }
+
+  /** Shows keyboard focus and heatmap shading, on cells that can. */
+  private void styleOverlay(View cellView, MonthCellDescriptor cell) {
+    if (cellView instanceof CalendarCellView) {
+      final CalendarCellView calendarCellView = (CalendarCellView) cellView;
+      calendarCellView.setDayFocused(cell.getEpochDay() == focusedDay);
+      calendarCellView.setHeatColor(heatmap != null && cell.isCurrentMonth()
+          ? heatmap.colorAt(cell.getEpochDay() - heatmapFirstDay) : 0);
+    }
+  }
+
+  /**
+   * The cheap part of {@link #styleCell}: selection and month states, with a flat text color in
+   * place of the selector.  Skips {@link #stylizeCellView} and clears focus and shading left over
+   * from the view's last month.
+   */
+  private void styleCellPlain(CheckedTextView cellView, MonthCellDescriptor cell) {
+    cellView.setEnabled(cell.isCurrentMonth());
+    cellView.setChecked(!cell.isToday());
+    cellView.setSelected(cell.isSelected());
+    if (plainTextColor == null) {
+      final Resources res = getResources();
+      plainTextColor = ColorStateList.valueOf(res.getColor(R.color.calendar_text_active));
+      plainUnselectableTextColor =
+          ColorStateList.valueOf(res.getColor(R.color.calendar_text_unselectable));
+    }
+    cellView.setTextColor(cell.isSelectable() ? plainTextColor : plainUnselectableTextColor);
+    if (cellView instanceof CalendarCellView) {
+      final CalendarCellView calendarCellView = (CalendarCellView) cellView;
+      calendarCellView.setRangeState(cell.getRangeState());
+      calendarCellView.setDayFocused(false);
+      calendarCellView.setHeatColor(0);
+    }
+  }
+
   protected void stylizeCellView(CheckedTextView cellView, MonthCellDescriptor cell) {
+    stylizeCellViewDefault(cellView, cell);
+  }
+
+  /** The stock cell styling, shared with views that bind cells outside of a MonthView. */
+  static void stylizeCellViewDefault(CheckedTextView cellView, MonthCellDescriptor cell) {
     cellView.setEnabled(cell.isCurrentMonth());
     cellView.setChecked(!cell.isToday());
     cellView.setSelected(cell.isSelected());
+    if (cellView instanceof CalendarCellView) {
+      ((CalendarCellView) cellView).setRangeState(cell.getRangeState());
+    }
+    final Resources res = cellView.getResources();
     if (cell.isSelectable()) {
-      cellView.setTextColor(getResources().getColorStateList(R.color.calendar_text_selector));
+      cellView.setTextColor(res.getColorStateList(R.color.calendar_text_selector));
     } else {
-      cellView.setTextColor(getResources().getColor(R.color.calendar_text_unselectable));
+      cellView.setTextColor(res.getColor(R.color.calendar_text_unselectable));
     }
   }
 
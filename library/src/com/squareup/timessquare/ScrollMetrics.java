@@ -0,0 +1,182 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+/**
+ * Scroll smoothness of a picker, for measuring in production: how many months were bound per
+ * frame, how long binds took, and how many frames were dropped while the list scrolled.  Attach
+ * one with {@code setScrollMetrics}; pickers without one pay a null check per bind and frame.
+ * <p>
+ * Frames are timed from one draw of the picker to the next during a scroll.  A gap longer than
+ * {@link #MAX_FRAME_GAP_MILLIS} is taken as the list standing still under a finger, not as
+ * dropped frames, and starts a new run.  Not thread-safe: record, read and reset on the main
+ * thread.
+ */
+public final class ScrollMetrics {
+  /** Length of a frame at 60 frames per second. */
+  static final long FRAME_NANOS = 16666667L;
+  public static final long MAX_FRAME_GAP_MILLIS = 250;
+  private static final long MAX_FRAME_GAP_NANOS = MAX_FRAME_GAP_MILLIS * 1000000L;
+
+  private final Histogram bindsPerFrame = new Histogram(0, 1, 2, 3, 4, 6, 8);
+  private final Histogram bindMicros = new Histogram(250, 500, 1000, 2000, 4000, 8000, 16000);
+  private final Histogram frameMillis = new Histogram(17, 33, 50, 67, 100, 250);
+  private long droppedFrames;
+  private int sessions;
+  private boolean scrolling;
+  /** Time of the last frame drawn in this run, or 0 before the first. */
+  private long lastFrameNanos;
+  private int bindsThisFrame;
+
+  /** Months bound per frame drawn while scrolling. */
+  public Histogram getBindsPerFrame() {
+    return bindsPerFrame;
+  }
+
+  /** Duration of each month bind, scrolling or not, in microseconds. */
+  public Histogram getBindMicros() {
+    return bindMicros;
+  }
+
+  /** Time between consecutive frames while scrolling, in milliseconds. */
+  public Histogram getFrameMillis() {
+    return frameMillis;
+  }
+
+  /** Frames missed while scrolling: each frame interval's length in frames, less one. */
+  public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  /** Number of times the list started scrolling. */
+  public int getScrollSessions() {
+    return sessions;
+  }
+
+  /** Clears everything recorded so far.  A scroll in progress keeps being recorded. */
+  public void reset() {
+    bindsPerFrame.reset();
+    bindMicros.reset();
+    frameMillis.reset();
+    droppedFrames = 0;
+    sessions = 0;
+    lastFrameNanos = 0;
+    bindsThisFrame = 0;
+  }
+
+  void setScrolling(boolean scrolling) {
+    if (this.scrolling == scrolling) {
+      return;
+    }
+    this.scrolling = scrolling;
+    if (scrolling) {
+      sessions++;
+    }
+    lastFrameNanos = 0;
+    bindsThisFrame = 0;
+  }
+
+  void bindFinished(long durationNanos) {
+    bindMicros.record(durationNanos / 1000);
+    if (scrolling) {
+      bindsThisFrame++;
+    }
+  }
+
+  void frameDrawn(long nowNanos) {
+    if (!scrolling) {
+      return;
+    }
+    final long interval = nowNanos - lastFrameNanos;
+    if (lastFrameNanos != 0 && interval <= MAX_FRAME_GAP_NANOS) {
+      frameMillis.record(interval / 1000000);
+      // Round to the nearest whole frame so vsync jitter isn't counted as a drop.
+      droppedFrames += Math.max(0, (interval + FRAME_NANOS / 2) / FRAME_NANOS - 1);
+    }
+    bindsPerFrame.record(bindsThisFrame);
+    bindsThisFrame = 0;
+    lastFrameNanos = nowNanos;
+  }
+
+  /**
+   * Counts of values in fixed buckets.  Bucket {@code i} holds values no greater than its upper
+   * bound and greater than the previous bucket's; the last bucket holds everything above.
+   */
+  public static final class Histogram {
+    private final long[] upperBounds;
+    private final long[] counts;
+    private long total;
+    private long sum;
+    private long max;
+
+    Histogram(long... upperBounds) {
+      this.upperBounds = upperBounds;
+      counts = new long[upperBounds.length + 1];
+    }
+
+    public int getBucketCount() {
+      return counts.length;
+    }
+
+    /** Largest value in bucket {@code index}, or {@link Long#MAX_VALUE} for the last bucket. */
+    public long getUpperBound(int index) {
+      return index < upperBounds.length ? upperBounds[index] : Long.MAX_VALUE;
+    }
+
+    public long getCount(int index) {
+      return counts[index];
+    }
+
+    /** Number of values recorded. */
+    public long getTotalCount() {
+      return total;
+    }
+
+    /** Mean of the values recorded, or 0 if there are none. */
+    public double getMean() {
+      return total == 0 ? 0 : (double) sum / total;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the value at {@code percentile}, 0 through
+     * 100, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+      if (percentile < 0 || percentile > 100) {
+        throw new IllegalArgumentException("Percentile must be 0 to 100: " + percentile);
+      }
+      final long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && seen > 0) {
+          return Math.min(getUpperBound(i), max);
+        }
+      }
+      return 0;
+    }
+
+    void record(long value) {
+      int i = 0;
+      while (i < upperBounds.length && value > upperBounds[i]) {
+        i++;
+      }
+      counts[i]++;
+      total++;
+      sum += value;
+      max = Math.max(max, value);
+    }
+
+    void reset() {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = 0;
+      }
+      total = 0;
+      sum = 0;
+      max = 0;
+    }
+  }
+}
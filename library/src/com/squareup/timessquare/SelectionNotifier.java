@@ -0,0 +1,77 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.os.Build;
+import android.view.View;
+
+/**
+ * Tells a picker when to deliver a selection change to its listener: at once, or coalesced so a
+ * burst of taps produces at most one delivery per frame or per interval.  The picker keeps the
+ * last values it delivered, so a coalesced delivery still carries the values from before the
+ * burst as the old ones.
+ */
+final class SelectionNotifier {
+  /** Coalesce changes to at most one delivery per frame. */
+  static final long PER_FRAME = -1;
+  /** Delay standing in for a frame where {@link View#postOnAnimation} isn't available. */
+  private static final long FRAME_MILLIS = 16;
+
+  interface Callback {
+    /** Delivers the picker's current selection, if it differs from the last delivered. */
+    void deliverSelection();
+  }
+
+  private final View view;
+  private final Callback callback;
+  private final Runnable deliver = new Runnable() {
+    @Override public void run() {
+      pending = false;
+      callback.deliverSelection();
+    }
+  };
+  private long interval;
+  private boolean pending;
+
+  SelectionNotifier(View view, Callback callback) {
+    this.view = view;
+    this.callback = callback;
+  }
+
+  /**
+   * @param interval 0 to deliver every change at once, {@link #PER_FRAME}, or the least time in
+   * milliseconds between deliveries.
+   */
+  void setInterval(long interval) {
+    if (interval < 0 && interval != PER_FRAME) {
+      throw new IllegalArgumentException("Invalid coalescing interval: " + interval);
+    }
+    this.interval = interval;
+  }
+
+  /** Called on every selection change. */
+  void selectionChanged() {
+    if (interval == 0) {
+      callback.deliverSelection();
+      return;
+    }
+    if (pending) {
+      return;
+    }
+    pending = true;
+    if (interval != PER_FRAME) {
+      view.postDelayed(deliver, interval);
+    } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      view.postOnAnimation(deliver);
+    } else {
+      view.postDelayed(deliver, FRAME_MILLIS);
+    }
+  }
+
+  /** Drops a pending delivery, e.g. when the picker is re-initialized. */
+  void cancel() {
+    if (pending) {
+      view.removeCallbacks(deliver);
+      pending = false;
+    }
+  }
+}
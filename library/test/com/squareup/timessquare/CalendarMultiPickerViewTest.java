@@ -0,0 +1,118 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.app.Activity;
+import android.view.View;
+import android.view.ViewGroup;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static java.util.Calendar.NOVEMBER;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CalendarMultiPickerViewTest {
+  private CalendarMultiPickerView view;
+  private Date selected;
+
+  @Before
+  public void setUp() throws Exception {
+    view = new CalendarMultiPickerView(new Activity(), null);
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(2012, NOVEMBER, 16);
+    Date minDate = cal.getTime();
+    cal.set(2012, NOVEMBER, 20);
+    selected = cal.getTime();
+    cal.set(2013, NOVEMBER, 16);
+    Date maxDate = cal.getTime();
+    view.init(CalendarModels.create(new Activity(), minDate, maxDate), selected, null);
+  }
+
+  @Test
+  public void testColumnsShareMonthsAndKeepTheirOwnSelection() throws Exception {
+    assertThat(view.getColumnCount()).isEqualTo(2);
+    assertThat(view.months).hasSize(13);
+    assertThat(view.getSelectedDate(0)).isEqualTo(selected);
+    assertThat(view.getSelectedDate(1)).isNull();
+
+    // One row binds the month in both columns.
+    ViewGroup row = (ViewGroup) view.getAdapter().getView(0, null, view);
+    assertThat(row.getChildCount()).isEqualTo(2);
+    MonthView first = (MonthView) row.getChildAt(0);
+    MonthView second = (MonthView) row.getChildAt(1);
+    // November 20th, 2012 is the third day of the fourth week.
+    assertThat(first.getCell(23).isSelected()).isTrue();
+    assertThat(second.getCell(23).isSelected()).isFalse();
+
+    final int[] selectedColumn = { -1 };
+    view.setOnDateSelectedListener(new CalendarMultiPickerView.OnDateSelectedListener() {
+      @Override public void onDateSelected(int column, Date oldDate, Date newDate) {
+        selectedColumn[0] = column;
+        assertThat(oldDate).isNull();
+      }
+    });
+    second.performCellClick(second.getCell(24));
+    assertThat(selectedColumn[0]).isEqualTo(1);
+    assertThat(second.getCell(24).isSelected()).isTrue();
+    assertThat(first.getCell(24).isSelected()).isFalse();
+    assertThat(view.getSelectedDate(0)).isEqualTo(selected);
+  }
+
+  @Test
+  public void testColumnsShareOneModelBudget() throws Exception {
+    // 25 years of months would fit one column's full budget, but not two.
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(2000, NOVEMBER, 1);
+    Date minDate = cal.getTime();
+    cal.set(2025, NOVEMBER, 1);
+    view.init(CalendarModels.create(new Activity(), minDate, cal.getTime()), null, null);
+    View row = null;
+    for (int i = 0; i < view.months.size(); i++) {
+      row = view.getAdapter().getView(i, row, view);
+    }
+    assertThat(view.getModelBytesEstimate()).isLessThanOrEqualTo(MonthCells.DEFAULT_MAX_BYTES);
+  }
+
+  @Test
+  public void testCoalescedSelectionsAreDeliveredPerColumn() throws Exception {
+    final List<String> delivered = new ArrayList<String>();
+    view.setOnDateSelectedListener(new CalendarMultiPickerView.OnDateSelectedListener() {
+      @Override public void onDateSelected(int column, Date oldDate, Date newDate) {
+        delivered.add(column + " " + oldDate + " " + newDate);
+      }
+    });
+    view.setSelectionCoalescing(100);
+    ViewGroup row = (ViewGroup) view.getAdapter().getView(0, null, view);
+    MonthView first = (MonthView) row.getChildAt(0);
+    MonthView second = (MonthView) row.getChildAt(1);
+    first.performCellClick(first.getCell(24));
+    first.performCellClick(first.getCell(25));
+    second.performCellClick(second.getCell(24));
+    assertThat(delivered).isEmpty();
+
+    Robolectric.getUiThreadScheduler().advanceBy(100);
+    assertThat(delivered).containsExactly(
+        "0 " + selected + " " + first.getCell(25).getDate(),
+        "1 null " + second.getCell(24).getDate());
+  }
+
+  @Test
+  public void testSelectedDatesMustBeInRange() throws Exception {
+    try {
+      view.init(CalendarModels.create(new Activity(), selected, new Date(selected.getTime()
+          + 86400000L * 30)), new Date(selected.getTime() - 86400000L * 30));
+      fail("Should not accept a date before the min date");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -2,28 +2,56 @@
 package com.squareup.timessquare;
 
 import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckedTextView;
+import android.widget.LinearLayout;
+import android.widget.ListAdapter;
+import android.widget.TextView;
 import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import static android.view.View.MeasureSpec.EXACTLY;
+import static android.view.View.MeasureSpec.UNSPECIFIED;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static android.widget.AbsListView.OnScrollListener.SCROLL_STATE_FLING;
+import static android.widget.AbsListView.OnScrollListener.SCROLL_STATE_IDLE;
 import static java.util.Calendar.DAY_OF_MONTH;
 import static java.util.Calendar.DECEMBER;
 import static java.util.Calendar.FEBRUARY;
 import static java.util.Calendar.JANUARY;
+import static java.util.Calendar.JUNE;
 import static java.util.Calendar.MARCH;
 import static java.util.Calendar.MAY;
+import static java.util.Calendar.MONDAY;
 import static java.util.Calendar.MONTH;
 import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.OCTOBER;
+import static java.util.Calendar.SUNDAY;
 import static java.util.Calendar.YEAR;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.fail;
 
 @RunWith(RobolectricTestRunner.class)
 public class CalendarPickerViewTest {
+  private static final int HEAT_COLOR = 0xff336699;
+
   private CalendarPickerView view;
   private Calendar today;
 
@@ -38,6 +66,7 @@ public class CalendarPickerViewTest {
     today.set(2012, NOVEMBER, 16, 0, 0);
     Date startDate = today.getTime();
     view.today.setTime(startDate);
+    view.setFirstDayOfWeek(SUNDAY);
     view.init(startDate, minDate, maxDate);
   }
 
@@ -125,6 +154,39 @@ public class CalendarPickerViewTest {
     assertCell(cells, 5, 6, 5, false, false, false, false);
   }
 
+  @Test
+  public void testMondayFirstDayOfWeek() throws Exception {
+    final Date minDate = today.getTime();
+    Calendar nextYear = Calendar.getInstance();
+    nextYear.setTime(minDate);
+    nextYear.add(YEAR, 1);
+    view.setFirstDayOfWeek(MONDAY);
+    view.init(minDate, minDate, nextYear.getTime());
+    List<List<MonthCellDescriptor>> cells = getCells(DECEMBER, 2012, today);
+    assertThat(cells).hasSize(6);
+
+    // First cell is Monday the 26th of November.
+    assertCell(cells, 0, 0, 26, false, false, false, false);
+
+    // First day of December is a Saturday, the 6th cell.
+    assertCell(cells, 0, 5, 1, true, false, false, true);
+
+    // Last day of December is a Monday, the first cell of the 6th row.
+    assertCell(cells, 5, 0, 31, true, false, false, true);
+
+    // Last cell should be Sunday, January 6th.
+    assertCell(cells, 5, 6, 6, false, false, false, false);
+  }
+
+  @Test
+  public void testInvalidFirstDayOfWeek() throws Exception {
+    try {
+      view.setFirstDayOfWeek(0);
+      fail("Should not have been able to pass in an invalid day of week");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
   @Test
   public void testIsSelected() throws Exception {
     Calendar nov29 = Calendar.getInstance();
@@ -271,6 +333,733 @@ public class CalendarPickerViewTest {
     assertThat(view.months).hasSize(1);
   }
 
+  @Test
+  public void testInitWithTimeZone() throws Exception {
+    Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    utc.clear();
+    utc.set(2012, NOVEMBER, 16, 3, 0); // Still the 15th in California.
+    Date minDate = utc.getTime();
+    utc.set(2013, NOVEMBER, 16, 3, 0);
+    Date maxDate = utc.getTime();
+    TimeZone pacific = TimeZone.getTimeZone("America/Los_Angeles");
+    view.init(minDate, minDate, maxDate, pacific);
+
+    Calendar selected = Calendar.getInstance(pacific);
+    selected.setTime(view.getSelectedDate());
+    assertThat(selected.get(DAY_OF_MONTH)).isEqualTo(15);
+
+    // November 15th is the first selectable day, November 14th the day before is not.
+    MonthCellDescriptor nov15 = view.cells.get(0).get(2).get(4);
+    assertThat(nov15.getValue()).isEqualTo(15);
+    assertThat(nov15.isSelectable()).isTrue();
+    assertThat(nov15.isSelected()).isTrue();
+    assertThat(view.cells.get(0).get(2).get(3).isSelectable()).isFalse();
+  }
+
+  @Test
+  public void testSmallRangeIsBuiltUpFront() throws Exception {
+    assertThat(view.cells.isWindowed()).isFalse();
+    assertThat(view.cells.residentCount()).isEqualTo(view.months.size());
+    assertThat(view.getModelBytesEstimate()).isLessThanOrEqualTo(MonthCells.DEFAULT_MAX_BYTES);
+  }
+
+  @Test
+  public void testHundredYearRangeIsBounded() throws Exception {
+    Calendar cal = Calendar.getInstance();
+    cal.set(1950, JANUARY, 1);
+    final Date minDate = cal.getTime();
+    cal.set(2012, NOVEMBER, 16);
+    final Date selectedDate = cal.getTime();
+    cal.set(2050, JANUARY, 1);
+    final Date maxDate = cal.getTime();
+    view.init(selectedDate, minDate, maxDate);
+    assertThat(view.months).hasSize(1200);
+    assertThat(view.cells).hasSize(1200);
+    assertThat(view.cells.isWindowed()).isTrue();
+
+    // Touch every month, as scrolling through the whole range would.
+    for (int i = 0; i < view.cells.size(); i++) {
+      assertThat(view.cells.get(i)).isNotEmpty();
+      assertThat(view.getModelBytesEstimate()).isLessThanOrEqualTo(MonthCells.DEFAULT_MAX_BYTES);
+    }
+    assertThat(view.cells.residentCount()).isLessThan(view.months.size());
+
+    // Months rebuilt after eviction still reflect the selection: 11/16/2012 is a Friday.
+    final int nov2012 = (2012 - 1950) * 12 + NOVEMBER;
+    assertCell(view.cells.get(nov2012), 2, 5, 16, true, true, true, true);
+  }
+
+  @Test
+  public void testClickBeforeTheSelectedMonthIsBuilt() throws Exception {
+    Calendar cal = Calendar.getInstance();
+    cal.set(1950, JANUARY, 1);
+    final Date minDate = cal.getTime();
+    cal.set(2012, NOVEMBER, 16);
+    final Date selectedDate = cal.getTime();
+    cal.set(2050, JANUARY, 1);
+    view.init(selectedDate, minDate, cal.getTime());
+    final int nov2012 = (2012 - 1950) * 12 + NOVEMBER;
+    assertThat(view.cells.peek(nov2012)).isNull();
+
+    // January 15th, 1950, is the third Sunday of the month.
+    MonthView january = (MonthView) view.getAdapter().getView(0, null, view);
+    january.performCellClick(january.getCell(14));
+    assertThat(view.getSelectedDate()).isEqualTo(january.getCell(14).getDate());
+    assertThat(january.getCell(14).isSelected()).isTrue();
+    assertCell(view.cells.get(nov2012), 2, 5, 16, true, false, true, true);
+
+    // Enter selects through the focused day, whose month isn't built either.
+    Calendar day = Calendar.getInstance();
+    day.set(1975, JUNE, 10);
+    view.dayFocus.focus(EpochDays.of(day));
+    assertThat(view.onKeyDown(KeyEvent.KEYCODE_ENTER, null)).isTrue();
+    assertThat(january.getCell(14).isSelected()).isFalse();
+    assertThat(EpochDays.of(view.getSelectedDate(), TimeZone.getDefault()))
+        .isEqualTo(EpochDays.of(day));
+  }
+
+  @Test
+  public void testMaxModelBytes() throws Exception {
+    view.setMaxModelBytes(1);
+    final Date minDate = today.getTime();
+    Calendar maxCal = Calendar.getInstance();
+    maxCal.setTime(minDate);
+    maxCal.add(MONTH, 6);
+    view.init(minDate, minDate, maxCal.getTime());
+    // Even a tiny cap keeps more months built than fit on screen.
+    assertThat(view.months).hasSize(7);
+    assertThat(view.cells.isWindowed()).isFalse();
+
+    view.setMaxModelBytes(MonthCells.MIN_RESIDENT * MonthCells.GRID_BYTES);
+    maxCal.add(YEAR, 2);
+    view.init(minDate, minDate, maxCal.getTime());
+    assertThat(view.cells.isWindowed()).isTrue();
+    assertThat(view.cells.residentCount()).isLessThan(view.months.size());
+
+    try {
+      view.setMaxModelBytes(0);
+      fail("Should not have been able to pass in a zero max");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testSharedModel() throws Exception {
+    Calendar cal = Calendar.getInstance();
+    cal.set(2012, NOVEMBER, 16);
+    final Date minDate = cal.getTime();
+    cal.set(2012, NOVEMBER, 29);
+    final Date otherSelectedDate = cal.getTime();
+    cal.set(2013, NOVEMBER, 16);
+    final Date maxDate = cal.getTime();
+    CalendarModel model = CalendarModel.create(minDate, maxDate, TimeZone.getDefault(), SUNDAY,
+        new SimpleDateFormat("MMMM yyyy"));
+    assertThat(model.getMonthCount()).isEqualTo(13);
+
+    CalendarPickerView other = new CalendarPickerView(new Activity(), null);
+    other.today.setTime(minDate);
+    view.init(model, minDate);
+    other.init(model, otherSelectedDate);
+    assertThat(other.months).hasSize(13);
+
+    // Same layout, separate selections.
+    assertCell(view.cells.get(0), 2, 5, 16, true, true, true, true);
+    assertCell(view.cells.get(0), 4, 4, 29, true, false, false, true);
+    assertCell(other.cells.get(0), 2, 5, 16, true, false, true, true);
+    assertCell(other.cells.get(0), 4, 4, 29, true, true, false, true);
+  }
+
+  @Test
+  public void testMonthGridsAreCached() throws Exception {
+    final long hits = MonthGridCache.hitCount();
+    final long misses = MonthGridCache.missCount();
+    // setUp() just laid out these 13 months, so laying them out again is all hits.
+    final Date minDate = today.getTime();
+    Calendar nextYear = Calendar.getInstance();
+    nextYear.setTime(minDate);
+    nextYear.add(YEAR, 1);
+    view.init(minDate, minDate, nextYear.getTime());
+    assertThat(MonthGridCache.hitCount() - hits).isEqualTo(13);
+    assertThat(MonthGridCache.missCount()).isEqualTo(misses);
+    assertThat(MonthGridCache.size()).isLessThanOrEqualTo(MonthGridCache.MAX_SIZE);
+  }
+
+  @Test
+  public void testArrowKeysMoveFocusedDay() throws Exception {
+    Calendar day = Calendar.getInstance();
+    day.set(2012, NOVEMBER, 30);
+    assertThat(view.dayFocus.focus(EpochDays.of(day))).isTrue();
+    assertThat(view.dayFocus.getMonthIndex()).isEqualTo(0);
+
+    // A week down crosses into December, then a day right.
+    assertThat(view.onKeyDown(KeyEvent.KEYCODE_DPAD_DOWN, null)).isTrue();
+    assertThat(view.dayFocus.getMonthIndex()).isEqualTo(1);
+    assertThat(view.onKeyDown(KeyEvent.KEYCODE_DPAD_RIGHT, null)).isTrue();
+    day.set(2012, DECEMBER, 8);
+    assertThat(view.dayFocus.getDay()).isEqualTo(EpochDays.of(day));
+
+    // Enter selects the focused day.
+    assertThat(view.onKeyDown(KeyEvent.KEYCODE_ENTER, null)).isTrue();
+    Calendar selected = Calendar.getInstance();
+    selected.setTime(view.getSelectedDate());
+    assertThat(selected.get(MONTH)).isEqualTo(DECEMBER);
+    assertThat(selected.get(DAY_OF_MONTH)).isEqualTo(8);
+
+    // Focus stops at the first selectable day.
+    day.set(2012, NOVEMBER, 16);
+    view.dayFocus.focus(EpochDays.of(day) - 10);
+    assertThat(view.dayFocus.getDay()).isEqualTo(EpochDays.of(day));
+    assertThat(view.dayFocus.moveBy(-1)).isFalse();
+  }
+
+  @Test
+  public void testItemIdsAreStableAcrossInit() throws Exception {
+    ListAdapter adapter = view.getAdapter();
+    assertThat(adapter.hasStableIds()).isTrue();
+    long[] ids = new long[adapter.getCount()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = adapter.getItemId(i);
+      if (i > 0) {
+        assertThat(ids[i]).isNotEqualTo(ids[i - 1]);
+      }
+    }
+
+    Calendar cal = Calendar.getInstance();
+    cal.set(2012, DECEMBER, 16);
+    Date minDate = cal.getTime();
+    cal.set(2013, DECEMBER, 16);
+    view.init(minDate, minDate, cal.getTime());
+    // December 2012 is now first, and keeps its id.
+    assertThat(adapter.getItemId(0)).isEqualTo(ids[1]);
+    assertThat(adapter.getItemId(ids.length - 2)).isEqualTo(ids[ids.length - 1]);
+  }
+
+  @Test
+  public void testSelectionChangeRebindsOnlyTheAffectedMonths() throws Exception {
+    int[] versions = view.monthVersions.clone();
+    // Select January 10th, 2013, two months after the selected November 16th.
+    MonthView january = (MonthView) view.getAdapter().getView(2, null, view);
+    int index = 0;
+    while (!january.getCell(index).isCurrentMonth() || january.getCell(index).getValue() != 10) {
+      index++;
+    }
+    january.performCellClick(january.getCell(index));
+    assertThat(january.getCell(index).isSelected()).isTrue();
+
+    for (int i = 0; i < versions.length; i++) {
+      if (i == 0 || i == 2) {
+        assertThat(view.monthVersions[i]).isNotEqualTo(versions[i]);
+      } else {
+        assertThat(view.monthVersions[i]).isEqualTo(versions[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testDateSelectedListenerGetsOldAndNewDates() throws Exception {
+    final Date[] delivered = new Date[2];
+    view.setOnDateSelectedListener(new CalendarPickerView.OnDateSelectedListener() {
+      @Override public void onDateSelected(Date oldDate, Date newDate) {
+        delivered[0] = oldDate;
+        delivered[1] = newDate;
+      }
+    });
+    Date oldDate = view.getSelectedDate();
+    Calendar day = Calendar.getInstance();
+    day.set(2012, NOVEMBER, 20);
+    view.dayFocus.focus(EpochDays.of(day));
+    assertThat(view.onKeyDown(KeyEvent.KEYCODE_ENTER, null)).isTrue();
+    assertThat(delivered[0]).isEqualTo(oldDate);
+    assertThat(delivered[1]).isEqualTo(view.getSelectedDate());
+
+    try {
+      view.setSelectionCoalescing(-2);
+      fail("Should not accept a negative interval");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testScrollMetricsCountsBindsAndDroppedFrames() throws Exception {
+    ScrollMetrics metrics = new ScrollMetrics();
+    view.setScrollMetrics(metrics);
+    long frame = ScrollMetrics.FRAME_NANOS;
+
+    metrics.setScrolling(true);
+    metrics.frameDrawn(frame);
+    metrics.bindFinished(600000);
+    metrics.bindFinished(1200000);
+    metrics.frameDrawn(2 * frame);
+    // Three frames late: two dropped.
+    metrics.frameDrawn(5 * frame);
+    // A finger holding the list still isn't jank.
+    metrics.frameDrawn(5 * frame + 1000000000L);
+    metrics.setScrolling(false);
+
+    assertThat(metrics.getScrollSessions()).isEqualTo(1);
+    assertThat(metrics.getDroppedFrames()).isEqualTo(2);
+    assertThat(metrics.getFrameMillis().getTotalCount()).isEqualTo(2);
+    assertThat(metrics.getBindsPerFrame().getTotalCount()).isEqualTo(4);
+    assertThat(metrics.getBindsPerFrame().getMax()).isEqualTo(2);
+    assertThat(metrics.getBindMicros().getTotalCount()).isEqualTo(2);
+    assertThat(metrics.getBindMicros().getPercentile(50)).isEqualTo(1000);
+    assertThat(metrics.getBindMicros().getPercentile(100)).isEqualTo(1200);
+
+    metrics.reset();
+    assertThat(metrics.getDroppedFrames()).isEqualTo(0);
+    assertThat(metrics.getBindMicros().getTotalCount()).isEqualTo(0);
+    assertThat(metrics.getBindMicros().getPercentile(50)).isEqualTo(0);
+  }
+
+  @Test
+  public void testWarmUpComputesTheFirstPickersMonths() throws Exception {
+    MonthGridCache.evictAll();
+    CalendarWarmUp.warmUp(new Activity());
+    assertThat(MonthGridCache.size()).isEqualTo(CalendarWarmUp.MONTHS);
+
+    // A picker for the year ahead finds every month's layout already computed.
+    long misses = MonthGridCache.missCount();
+    Date now = new Date();
+    Calendar nextYear = Calendar.getInstance();
+    nextYear.add(YEAR, 1);
+    new CalendarPickerView(new Activity(), null).init(now, now, nextYear.getTime());
+    assertThat(MonthGridCache.missCount()).isEqualTo(misses);
+  }
+
+  @Test
+  public void testFirstPickerFindsTheWarmedFormats() throws Exception {
+    // A provider that caches like the default one and records every format it has to build.
+    final Map<String, DateFormat> formats = new HashMap<String, DateFormat>();
+    final List<String> built = new ArrayList<String>();
+    DateFormats.setProvider(new DateFormats.Provider() {
+      @Override public DateFormat getPatternFormat(String pattern, Locale locale,
+          TimeZone timeZone) {
+        return get(pattern + " " + locale + " " + timeZone.getID(),
+            new SimpleDateFormat(pattern, locale));
+      }
+
+      @Override public DateFormat getDateFormat(int style, Locale locale, TimeZone timeZone) {
+        return get(style + " " + locale + " " + timeZone.getID(),
+            DateFormat.getDateInstance(style, locale));
+      }
+
+      private DateFormat get(String key, DateFormat format) {
+        if (!formats.containsKey(key)) {
+          built.add(key);
+          formats.put(key, format);
+        }
+        return formats.get(key);
+      }
+    });
+    try {
+      CalendarWarmUp.warmUpFormats(new Activity());
+      int warmed = built.size();
+      assertThat(warmed).isGreaterThan(0);
+
+      Date now = new Date();
+      Calendar nextYear = Calendar.getInstance();
+      nextYear.add(YEAR, 1);
+      new CalendarPickerView(new Activity(), null).init(now, now, nextYear.getTime());
+      assertThat(built).hasSize(warmed);
+    } finally {
+      DateFormats.setProvider(null);
+    }
+  }
+
+  @Test
+  public void testCellBinderReusesHoldersAcrossBinds() throws Exception {
+    final int[] created = new int[2];
+    view.setCellBinder(new CellBinder() {
+      @Override public int getViewTypeCount() {
+        return 2;
+      }
+
+      @Override public int getViewType(MonthCellDescriptor cell) {
+        return cell.isCurrentMonth() ? 0 : 1;
+      }
+
+      @Override public ViewHolder createViewHolder(ViewGroup row, int viewType) {
+        created[viewType]++;
+        return new ViewHolder(new TextView(row.getContext()));
+      }
+
+      @Override public void bindViewHolder(ViewHolder holder, MonthCellDescriptor cell) {
+        ((TextView) holder.itemView).setText(Integer.toString(cell.getValue()));
+      }
+    });
+    MonthView monthView = (MonthView) view.getAdapter().getView(0, null, view);
+    int createdCount = created[0] + created[1];
+    assertThat(created[0]).isGreaterThan(0);
+    assertThat(created[1]).isGreaterThan(0);
+
+    view.getAdapter().getView(0, monthView, view);
+    assertThat(created[0] + created[1]).isEqualTo(createdCount);
+    assertThat(monthView.getCell(0).isCurrentMonth()).isFalse();
+  }
+
+  @Test
+  public void testCellsBoundAfterLayoutAreMeasured() throws Exception {
+    MonthView monthView = (MonthView) view.getAdapter().getView(0, null, view);
+    final int widthSpec = makeMeasureSpec(700, EXACTLY);
+    final int heightSpec = makeMeasureSpec(0, UNSPECIFIED);
+    monthView.measure(widthSpec, heightSpec);
+    monthView.layout(0, 0, monthView.getMeasuredWidth(), monthView.getMeasuredHeight());
+
+    final List<TextView> labels = new ArrayList<TextView>();
+    view.setCellBinder(new CellBinder() {
+      @Override public int getViewTypeCount() {
+        return 1;
+      }
+
+      @Override public int getViewType(MonthCellDescriptor cell) {
+        return 0;
+      }
+
+      @Override public ViewHolder createViewHolder(ViewGroup row, int viewType) {
+        LinearLayout layout = new LinearLayout(row.getContext());
+        layout.setOrientation(LinearLayout.VERTICAL);
+        for (int i = 0; i < 2; i++) {
+          TextView label = new TextView(row.getContext());
+          label.setText("1");
+          layout.addView(label);
+          labels.add(label);
+        }
+        return new ViewHolder(layout);
+      }
+
+      @Override public void bindViewHolder(ViewHolder holder, MonthCellDescriptor cell) {
+      }
+    });
+    view.getAdapter().getView(0, monthView, view);
+    // The grid measures its rows with the same specs as before.
+    monthView.measure(widthSpec, heightSpec);
+    assertThat(labels).isNotEmpty();
+    for (TextView label : labels) {
+      assertThat(label.getMeasuredWidth()).isGreaterThan(0);
+      assertThat(label.getMeasuredHeight()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void testRowsMeasuredWithTheSameSizesAreSkipped() throws Exception {
+    final int[] measures = new int[1];
+    view.setCellBinder(new CellBinder() {
+      @Override public int getViewTypeCount() {
+        return 1;
+      }
+
+      @Override public int getViewType(MonthCellDescriptor cell) {
+        return 0;
+      }
+
+      @Override public ViewHolder createViewHolder(ViewGroup row, int viewType) {
+        return new ViewHolder(new TextView(row.getContext()) {
+          @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measures[0]++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+          }
+        });
+      }
+
+      @Override public void bindViewHolder(ViewHolder holder, MonthCellDescriptor cell) {
+        ((TextView) holder.itemView).setText(Integer.toString(cell.getValue()));
+      }
+    });
+    MonthView monthView = (MonthView) view.getAdapter().getView(0, null, view);
+    final int widthSpec = makeMeasureSpec(700, EXACTLY);
+    final int heightSpec = makeMeasureSpec(0, UNSPECIFIED);
+    monthView.measure(widthSpec, heightSpec);
+    assertThat(measures[0]).isGreaterThan(0);
+
+    // January 2013 has as many weeks as November 2012.  Rebinding the month to it keeps the cell
+    // views and their sizes, so nothing is measured again.
+    int measured = measures[0];
+    view.getAdapter().getView(2, monthView, view);
+    monthView.measure(widthSpec, heightSpec);
+    assertThat(measures[0]).isEqualTo(measured);
+  }
+
+  @Test
+  public void testDividersFollowTheVisibleWeeks() throws Exception {
+    MonthView monthView = (MonthView) view.getAdapter().getView(0, null, view);
+    CalendarGridView grid = (CalendarGridView) monthView.findViewById(R.id.calendar_grid);
+    DateFormat monthNameFormat = new SimpleDateFormat("MMMM yyyy", Locale.US);
+    Calendar month = Calendar.getInstance();
+    month.clear();
+
+    // Starting on Sunday, December 2012 spans six weeks, November 2012 five, February 2015 four.
+    month.set(2012, DECEMBER, 1);
+    monthView.init(monthNameFormat, month);
+    layOutDividers(monthView);
+    assertDividers(grid, 6);
+    final float[] dividers = grid.dividers;
+
+    month.set(2012, NOVEMBER, 1);
+    monthView.init(monthNameFormat, month);
+    layOutDividers(monthView);
+    assertDividers(grid, 5);
+    assertThat(grid.dividers).isSameAs(dividers);
+
+    month.set(2015, FEBRUARY, 1);
+    monthView.init(monthNameFormat, month);
+    layOutDividers(monthView);
+    assertDividers(grid, 4);
+    assertThat(grid.dividers).isSameAs(dividers);
+
+    month.set(2012, DECEMBER, 1);
+    monthView.init(monthNameFormat, month);
+    layOutDividers(monthView);
+    assertDividers(grid, 6);
+    assertThat(grid.dividers).isSameAs(dividers);
+  }
+
+  private static void layOutDividers(MonthView monthView) {
+    monthView.measure(makeMeasureSpec(700, EXACTLY), makeMeasureSpec(0, UNSPECIFIED));
+    monthView.layout(0, 0, monthView.getMeasuredWidth(), monthView.getMeasuredHeight());
+  }
+
+  /**
+   * Asserts {@code grid} has a line under its header and each of its {@code weeks} visible weeks,
+   * then one left of the first column and one right of each column.
+   */
+  private static void assertDividers(CalendarGridView grid, int weeks) {
+    final float[] dividers = grid.dividers;
+    assertThat(grid.dividerPointCount).isEqualTo((1 + weeks + 8) * 4);
+    for (int r = 0; r <= weeks; r++) {
+      View row = grid.getChildAt(r);
+      assertThat(row.getVisibility()).isEqualTo(View.VISIBLE);
+      assertLine(dividers, r, row.getLeft(), row.getBottom() - 1, row.getRight(),
+          row.getBottom() - 1);
+      if (r > 1) {
+        // Weeks are a cell apart.
+        assertThat(dividers[r * 4 + 1] - dividers[(r - 1) * 4 + 1]).isEqualTo(100f);
+      }
+    }
+    // Hidden weeks get no line: the vertical lines come right after the visible weeks'.
+    for (int r = weeks + 1; r < grid.getChildCount(); r++) {
+      assertThat(grid.getChildAt(r).getVisibility()).isEqualTo(View.GONE);
+    }
+
+    final ViewGroup firstWeek = (ViewGroup) grid.getChildAt(1);
+    final int top = firstWeek.getTop();
+    final int left = firstWeek.getChildAt(0).getLeft() + grid.getLeft();
+    assertLine(dividers, weeks + 1, left, top, left, grid.getBottom());
+    for (int c = 0; c < 7; c++) {
+      final int x = left + firstWeek.getChildAt(c).getRight() - 1;
+      assertLine(dividers, weeks + 2 + c, x, top, x, grid.getBottom());
+    }
+    // Columns are a cell apart.
+    assertThat(dividers[(weeks + 3) * 4] - dividers[(weeks + 2) * 4]).isEqualTo(100f);
+  }
+
+  private static void assertLine(float[] dividers, int line, float x0, float y0, float x1,
+      float y1) {
+    assertThat(dividers[line * 4]).isEqualTo(x0);
+    assertThat(dividers[line * 4 + 1]).isEqualTo(y0);
+    assertThat(dividers[line * 4 + 2]).isEqualTo(x1);
+    assertThat(dividers[line * 4 + 3]).isEqualTo(y1);
+  }
+
+  @Test
+  public void testCellSizesAreSharedPerWidthAndRatio() throws Exception {
+    GridMetrics metrics = new GridMetrics();
+    metrics.update(703, 1f);
+    assertThat(metrics.getCellWidth()).isEqualTo(100);
+    assertThat(metrics.getCellHeight()).isEqualTo(100);
+
+    // A ratio set on the picker wins over the grid's own.
+    metrics.setAspectRatio(2f);
+    metrics.update(703, 1f);
+    assertThat(metrics.getCellHeight()).isEqualTo(50);
+
+    view.setCellAspectRatio(1.5f);
+    try {
+      view.setCellAspectRatio(-1f);
+      fail("Should not accept a negative aspect ratio");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testOnlyDecoratedMonthsAreSnapshotted() throws Exception {
+    view.setSnapshotCachingEnabled(true);
+    MonthSnapshotCache cache = view.snapshotCache;
+    cache.setScrolling(true);
+    MonthView monthView = (MonthView) view.getAdapter().getView(1, null, view);
+    monthView.layout(0, 0, 700, 500);
+
+    // Bound mid-fling: the undecorated month is drawn, but never kept.
+    monthView.init(view.months.get(1), view.cells.get(1), false);
+    monthView.dispatchDraw(new Canvas());
+    assertThat(cache.get(1, 700, 500)).isNull();
+
+    monthView.decorate();
+    monthView.dispatchDraw(new Canvas());
+    Bitmap snapshot = cache.get(1, 700, 500);
+    assertThat(snapshot).isNotNull();
+    monthView.dispatchDraw(new Canvas());
+    assertThat(cache.get(1, 700, 500)).isSameAs(snapshot);
+
+    // Selecting a day of the month outdates its snapshot.
+    MonthCellDescriptor cell = monthView.getCell(14);
+    assertThat(cell.isSelectable()).isTrue();
+    monthView.performCellClick(cell);
+    assertThat(cache.get(1, 700, 500)).isNull();
+  }
+
+  @Test
+  public void testCellBinderAndInitDropSnapshots() throws Exception {
+    view.setSnapshotCachingEnabled(true);
+    MonthSnapshotCache cache = view.snapshotCache;
+    cache.put(1, cache.newBitmap(10, 10));
+    view.setCellBinder(new CellBinder() {
+      @Override public int getViewTypeCount() {
+        return 1;
+      }
+
+      @Override public int getViewType(MonthCellDescriptor cell) {
+        return 0;
+      }
+
+      @Override public ViewHolder createViewHolder(ViewGroup row, int viewType) {
+        return new ViewHolder(new TextView(row.getContext()));
+      }
+
+      @Override public void bindViewHolder(ViewHolder holder, MonthCellDescriptor cell) {
+      }
+    });
+    assertThat(cache.get(1, 10, 10)).isNull();
+
+    cache.put(1, cache.newBitmap(10, 10));
+    Calendar cal = Calendar.getInstance();
+    cal.set(2012, NOVEMBER, 16, 0, 0);
+    Date minDate = cal.getTime();
+    cal.set(2013, NOVEMBER, 16, 0, 0);
+    view.init(minDate, minDate, cal.getTime());
+    assertThat(cache.get(1, 10, 10)).isNull();
+  }
+
+  @Test
+  public void testScrollToMonthOnlyScrollsToDisplayedMonths() throws Exception {
+    MonthDescriptor first = view.months.get(0);
+    MonthDescriptor last = view.months.get(view.months.size() - 1);
+    assertThat(first.getYear()).isEqualTo(2012);
+    assertThat(first.getMonth()).isEqualTo(NOVEMBER);
+    assertThat(view.scrollToMonth(2012, NOVEMBER)).isTrue();
+    assertThat(view.scrollToMonth(last.getYear(), last.getMonth())).isTrue();
+
+    assertThat(view.scrollToMonth(2012, OCTOBER)).isFalse();
+    assertThat(view.scrollToMonth(2011, NOVEMBER)).isFalse();
+    assertThat(view.scrollToMonth(last.getYear(), last.getMonth() + 1)).isFalse();
+    assertThat(view.scrollToMonth(last.getYear() + 1, last.getMonth())).isFalse();
+  }
+
+  @Test
+  public void testMonthsBoundMidFlingAreOnlyNumberedUntilDecorated() throws Exception {
+    StyleCountingMonthView monthView = new StyleCountingMonthView(view);
+    shadeEveryDayAndFocusDecember10th();
+    view.scrollStateListener.onScrollStateChanged(view, SCROLL_STATE_FLING);
+    view.getAdapter().getView(1, monthView, view);
+
+    assertThat(monthView.styled).isEqualTo(0);
+    for (int i = 0, count = monthView.getCellCount(); i < count; i++) {
+      MonthCellDescriptor cell = monthView.getCell(i);
+      CalendarCellView cellView = cellViewAt(monthView, i);
+      assertThat(cellView.getText().toString()).isEqualTo(Integer.toString(cell.getValue()));
+      assertThat(cellView.isEnabled()).isEqualTo(cell.isCurrentMonth());
+      assertThat(cellView.isSelected()).isEqualTo(cell.isSelected());
+      assertThat(cellView.isDayFocused()).isFalse();
+      assertThat(cellView.getHeatColor()).isEqualTo(0);
+    }
+
+    assertThat(monthView.decorate()).isTrue();
+    assertThat(monthView.styled).isEqualTo(monthView.getCellCount());
+    assertDecorated(monthView);
+    // Styling is applied once: decorated months are left alone.
+    assertThat(monthView.decorate()).isFalse();
+    assertThat(monthView.styled).isEqualTo(monthView.getCellCount());
+  }
+
+  @Test
+  public void testFlingEndDecoratesTheVisibleMonths() throws Exception {
+    assertThat(view.getChildCount()).isGreaterThan(1);
+    shadeEveryDayAndFocusDecember10th();
+    view.scrollStateListener.onScrollStateChanged(view, SCROLL_STATE_FLING);
+    final int firstPosition = view.getFirstVisiblePosition();
+    for (int i = 0, count = view.getChildCount(); i < count; i++) {
+      view.getAdapter().getView(firstPosition + i, view.getChildAt(i), view);
+    }
+    MonthView december = (MonthView) view.getChildAt(1 - firstPosition);
+    assertThat(cellViewAt(december, decemberIndexOf(december, 10)).isDayFocused()).isFalse();
+
+    view.scrollStateListener.onScrollStateChanged(view, SCROLL_STATE_IDLE);
+    assertDecorated(december);
+    for (int i = 0, count = view.getChildCount(); i < count; i++) {
+      assertThat(((MonthView) view.getChildAt(i)).decorate()).isFalse();
+    }
+  }
+
+  /** Shades every day of the picker and focuses December 10th, 2012, of month 1. */
+  private void shadeEveryDayAndFocusDecember10th() {
+    int[] counts = new int[400];
+    Arrays.fill(counts, 1);
+    view.setHeatmap(new Heatmap(counts, new int[] { HEAT_COLOR }));
+    Calendar day = Calendar.getInstance();
+    day.set(2012, DECEMBER, 10);
+    assertThat(view.dayFocus.focus(EpochDays.of(day))).isTrue();
+    assertThat(view.dayFocus.getMonthIndex()).isEqualTo(1);
+  }
+
+  /** Asserts December 2012 shows focus on the 10th and shading on its selectable days. */
+  private static void assertDecorated(MonthView december) {
+    final int focused = decemberIndexOf(december, 10);
+    for (int i = 0, count = december.getCellCount(); i < count; i++) {
+      MonthCellDescriptor cell = december.getCell(i);
+      CalendarCellView cellView = cellViewAt(december, i);
+      assertThat(cellView.isDayFocused()).isEqualTo(i == focused);
+      assertThat(cellView.getHeatColor()).isEqualTo(cell.isCurrentMonth() ? HEAT_COLOR : 0);
+    }
+  }
+
+  private static int decemberIndexOf(MonthView december, int dayOfMonth) {
+    int index = 0;
+    while (!december.getCell(index).isCurrentMonth()
+        || december.getCell(index).getValue() != dayOfMonth) {
+      index++;
+    }
+    return index;
+  }
+
+  private static CalendarCellView cellViewAt(MonthView monthView, int index) {
+    ViewGroup grid = (ViewGroup) monthView.findViewById(R.id.calendar_grid);
+    return (CalendarCellView) ((ViewGroup) grid.getChildAt(index / 7 + 1)).getChildAt(index % 7);
+  }
+
+  /** A month view that counts the cells it styles in full. */
+  private static class StyleCountingMonthView extends MonthView {
+    int styled;
+
+    /** Takes the title and grid of a month inflated by {@code picker}. */
+    StyleCountingMonthView(CalendarPickerView picker) {
+      super(picker.getContext(), null);
+      MonthView inflated = (MonthView) picker.getAdapter().getView(0, null, picker);
+      List<View> children = new ArrayList<View>();
+      for (int i = 0; i < inflated.getChildCount(); i++) {
+        children.add(inflated.getChildAt(i));
+      }
+      inflated.removeAllViews();
+      for (View child : children) {
+        addView(child);
+      }
+      onFinishInflate();
+    }
+
+    @Override protected void stylizeCellView(CheckedTextView cellView, MonthCellDescriptor cell) {
+      styled++;
+      super.stylizeCellView(cellView, cell);
+    }
+  }
+
   private static void assertCell(List<List<MonthCellDescriptor>> cells, int row, int col,
       int expectedVal, boolean expectedCurrentMonth, boolean expectedSelected,
       boolean expectedToday, boolean expectedSelectable) {
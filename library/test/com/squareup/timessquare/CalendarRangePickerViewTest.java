@@ -0,0 +1,280 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.app.Activity;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static java.util.Calendar.DECEMBER;
+import static java.util.Calendar.JANUARY;
+import static java.util.Calendar.MONTH;
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.OCTOBER;
+import static java.util.Calendar.YEAR;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CalendarRangePickerViewTest {
+  private CalendarRangePickerView view;
+  private Date minDate;
+  private Date maxDate;
+
+  @Before
+  public void setUp() throws Exception {
+    view = new CalendarRangePickerView(new Activity(), null);
+    minDate = date(2012, NOVEMBER, 16);
+    maxDate = date(2013, NOVEMBER, 16);
+    view.init(minDate, maxDate);
+  }
+
+  @Test
+  public void testNightsRangeMustBeValid() throws Exception {
+    try {
+      view.setNightsRange(-1, 3);
+      fail("Should not accept negative nights");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      view.setNightsRange(3, 2);
+      fail("Should not accept a max below the min");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testInitRejectsRangesOutsideTheNightsRange() throws Exception {
+    view.setNightsRange(2, 5);
+    try {
+      view.init(date(2012, NOVEMBER, 20), date(2012, NOVEMBER, 21), minDate, maxDate);
+      fail("Should not accept a range shorter than the min nights");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      view.init(date(2012, NOVEMBER, 20), date(2012, NOVEMBER, 26), minDate, maxDate);
+      fail("Should not accept a range longer than the max nights");
+    } catch (IllegalArgumentException expected) {
+    }
+    view.init(date(2012, NOVEMBER, 20), date(2012, NOVEMBER, 25), minDate, maxDate);
+    assertThat(view.getSelectedEndDate()).isEqualTo(date(2012, NOVEMBER, 25));
+  }
+
+  @Test
+  public void testClicksOutsideTheNightsRangeStartANewRange() throws Exception {
+    view.setNightsRange(2, 5);
+    view.handleClick(cell(2012, NOVEMBER, 20));
+    // One night is too short.
+    view.handleClick(cell(2012, NOVEMBER, 21));
+    assertThat(view.getSelectedStartDate()).isEqualTo(date(2012, NOVEMBER, 21));
+    assertThat(view.getSelectedEndDate()).isNull();
+    // Nine nights are too long.
+    view.handleClick(cell(2012, NOVEMBER, 30));
+    assertThat(view.getSelectedStartDate()).isEqualTo(date(2012, NOVEMBER, 30));
+    assertThat(view.getSelectedEndDate()).isNull();
+    view.handleClick(cell(2012, DECEMBER, 3));
+    assertThat(view.getSelectedStartDate()).isEqualTo(date(2012, NOVEMBER, 30));
+    assertThat(view.getSelectedEndDate()).isEqualTo(date(2012, DECEMBER, 3));
+  }
+
+  @Test
+  public void testDragPreviewsThenCompletesTheRange() throws Exception {
+    view.startDrag(cell(2012, NOVEMBER, 20).getEpochDay());
+    assertThat(view.getSelectedStartDate()).isEqualTo(date(2012, NOVEMBER, 20));
+    view.previewTo(cell(2012, NOVEMBER, 25).getEpochDay());
+    assertThat(cell(2012, NOVEMBER, 20).getRangeState()).isEqualTo(RangeState.FIRST);
+    assertThat(cell(2012, NOVEMBER, 22).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    assertThat(cell(2012, NOVEMBER, 25).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(cell(2012, NOVEMBER, 26).isSelected()).isFalse();
+
+    // Dragging back deselects the days left behind.
+    view.previewTo(cell(2012, NOVEMBER, 22).getEpochDay());
+    assertThat(cell(2012, NOVEMBER, 22).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(cell(2012, NOVEMBER, 23).isSelected()).isFalse();
+    assertThat(cell(2012, NOVEMBER, 25).getRangeState()).isEqualTo(RangeState.NONE);
+    // Nothing is selected until the drag completes.
+    assertThat(view.getSelectedEndDate()).isNull();
+
+    view.completeDrag();
+    assertThat(view.getSelectedStartDate()).isEqualTo(date(2012, NOVEMBER, 20));
+    assertThat(view.getSelectedEndDate()).isEqualTo(date(2012, NOVEMBER, 22));
+  }
+
+  @Test
+  public void testDragPreviewIsClampedToTheNightsRange() throws Exception {
+    view.setNightsRange(3, 4);
+    view.startDrag(cell(2012, NOVEMBER, 20).getEpochDay());
+    view.previewTo(cell(2012, NOVEMBER, 21).getEpochDay());
+    assertThat(cell(2012, NOVEMBER, 23).getRangeState()).isEqualTo(RangeState.LAST);
+    view.previewTo(cell(2012, NOVEMBER, 30).getEpochDay());
+    assertThat(cell(2012, NOVEMBER, 24).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(cell(2012, NOVEMBER, 25).isSelected()).isFalse();
+
+    view.previewTo(cell(2012, NOVEMBER, 21).getEpochDay());
+    view.completeDrag();
+    assertThat(view.getSelectedEndDate()).isEqualTo(date(2012, NOVEMBER, 23));
+  }
+
+  @Test
+  public void testMonthsBuiltMidDragShowThePreview() throws Exception {
+    // Only a window of months is kept, so months are built as they're first needed.
+    view.setMaxModelBytes(1);
+    view.init(minDate, maxDate);
+    view.startDrag(cell(2012, NOVEMBER, 20).getEpochDay());
+    view.previewTo(EpochDays.of(date(2013, JANUARY, 5), view.today.getTimeZone()));
+    assertThat(cell(2012, DECEMBER, 31).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    assertThat(cell(2013, JANUARY, 5).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(cell(2013, JANUARY, 6).isSelected()).isFalse();
+  }
+
+  @Test
+  public void testRangeStatesAcrossMonthBoundaries() throws Exception {
+    view.init(date(2012, NOVEMBER, 29), date(2012, DECEMBER, 2), minDate, maxDate);
+    assertThat(cell(2012, NOVEMBER, 28).getRangeState()).isEqualTo(RangeState.NONE);
+    assertThat(cell(2012, NOVEMBER, 29).getRangeState()).isEqualTo(RangeState.FIRST);
+    assertThat(cell(2012, NOVEMBER, 30).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    assertThat(cell(2012, DECEMBER, 1).getRangeState()).isEqualTo(RangeState.MIDDLE);
+    assertThat(cell(2012, DECEMBER, 2).getRangeState()).isEqualTo(RangeState.LAST);
+    assertThat(cell(2012, DECEMBER, 3).getRangeState()).isEqualTo(RangeState.NONE);
+
+    // The cell views carry the states of their days.
+    MonthView november = (MonthView) view.getAdapter().getView(0, null, view);
+    MonthView december = (MonthView) view.getAdapter().getView(1, null, view);
+    assertThat(cellView(november, cell(2012, NOVEMBER, 29)).getRangeState())
+        .isEqualTo(RangeState.FIRST);
+    assertThat(cellView(november, cell(2012, NOVEMBER, 30)).getRangeState())
+        .isEqualTo(RangeState.MIDDLE);
+    assertThat(cellView(december, cell(2012, DECEMBER, 1)).getRangeState())
+        .isEqualTo(RangeState.MIDDLE);
+    assertThat(cellView(december, cell(2012, DECEMBER, 2)).getRangeState())
+        .isEqualTo(RangeState.LAST);
+    // November's trailing December days aren't part of the range.
+    int trailing = november.indexOfDay(cell(2012, DECEMBER, 1).getEpochDay());
+    assertThat(november.getCell(trailing).isCurrentMonth()).isFalse();
+    assertThat(cellView(november, november.getCell(trailing)).getRangeState())
+        .isEqualTo(RangeState.NONE);
+
+    // A started range is a single day.
+    view.handleClick(cell(2012, DECEMBER, 10));
+    view.getAdapter().getView(1, december, view);
+    assertThat(cellView(december, cell(2012, DECEMBER, 10)).getRangeState())
+        .isEqualTo(RangeState.SINGLE);
+    assertThat(cellView(december, cell(2012, DECEMBER, 2)).getRangeState())
+        .isEqualTo(RangeState.NONE);
+    assertThat(cell(2012, NOVEMBER, 29).getRangeState()).isEqualTo(RangeState.NONE);
+
+    // So is a range of zero nights.
+    view.init(date(2012, DECEMBER, 5), date(2012, DECEMBER, 5), minDate, maxDate);
+    assertThat(cell(2012, DECEMBER, 5).getRangeState()).isEqualTo(RangeState.SINGLE);
+  }
+
+  @Test
+  public void testRangeSelectedListenerGetsOldAndNewRanges() throws Exception {
+    final List<Date[]> delivered = new ArrayList<Date[]>();
+    view.setOnRangeSelectedListener(new RangeRecorder(delivered));
+    view.handleClick(cell(2012, NOVEMBER, 20));
+    assertThat(delivered).hasSize(1);
+    assertDelivered(delivered.get(0), null, null, date(2012, NOVEMBER, 20), null);
+    view.handleClick(cell(2012, DECEMBER, 2));
+    assertThat(delivered).hasSize(2);
+    assertDelivered(delivered.get(1), date(2012, NOVEMBER, 20), null, date(2012, NOVEMBER, 20),
+        date(2012, DECEMBER, 2));
+  }
+
+  @Test
+  public void testCoalescedChangesAreDeliveredAtMostOncePerInterval() throws Exception {
+    final List<Date[]> delivered = new ArrayList<Date[]>();
+    view.setOnRangeSelectedListener(new RangeRecorder(delivered));
+    view.setSelectionCoalescing(100);
+    view.handleClick(cell(2012, NOVEMBER, 20));
+    view.handleClick(cell(2012, NOVEMBER, 22));
+    view.handleClick(cell(2012, NOVEMBER, 25));
+    assertThat(delivered).isEmpty();
+
+    Robolectric.getUiThreadScheduler().advanceBy(100);
+    assertThat(delivered).hasSize(1);
+    // The old range is the one from before the burst.
+    assertDelivered(delivered.get(0), null, null, date(2012, NOVEMBER, 25), null);
+
+    view.handleClick(cell(2012, NOVEMBER, 27));
+    Robolectric.getUiThreadScheduler().advanceBy(100);
+    assertThat(delivered).hasSize(2);
+    assertDelivered(delivered.get(1), date(2012, NOVEMBER, 25), null, date(2012, NOVEMBER, 25),
+        date(2012, NOVEMBER, 27));
+
+    // A burst that ends where it started delivers nothing.
+    view.handleClick(cell(2012, NOVEMBER, 25));
+    view.handleClick(cell(2012, NOVEMBER, 27));
+    Robolectric.getUiThreadScheduler().advanceBy(100);
+    assertThat(delivered).hasSize(2);
+  }
+
+  /** Returns the descriptor of the given day in its own month, building the month if needed. */
+  @Test
+  public void testScrollToMonthOnlyScrollsToDisplayedMonths() throws Exception {
+    MonthDescriptor first = view.months.get(0);
+    MonthDescriptor last = view.months.get(view.months.size() - 1);
+    assertThat(first.getYear()).isEqualTo(2012);
+    assertThat(first.getMonth()).isEqualTo(NOVEMBER);
+    assertThat(view.scrollToMonth(2012, NOVEMBER)).isTrue();
+    assertThat(view.scrollToMonth(last.getYear(), last.getMonth())).isTrue();
+
+    assertThat(view.scrollToMonth(2012, OCTOBER)).isFalse();
+    assertThat(view.scrollToMonth(2011, NOVEMBER)).isFalse();
+    assertThat(view.scrollToMonth(last.getYear(), last.getMonth() + 1)).isFalse();
+    assertThat(view.scrollToMonth(last.getYear() + 1, last.getMonth())).isFalse();
+  }
+
+  private MonthCellDescriptor cell(int year, int month, int dayOfMonth) {
+    final Calendar first = Calendar.getInstance();
+    first.setTime(minDate);
+    final int index = (year - first.get(YEAR)) * 12 + month - first.get(MONTH);
+    final Date date = date(year, month, dayOfMonth);
+    for (List<MonthCellDescriptor> week : view.cells.get(index)) {
+      for (MonthCellDescriptor cell : week) {
+        if (cell.isCurrentMonth() && cell.getDate().equals(date)) {
+          return cell;
+        }
+      }
+    }
+    throw new AssertionError("No cell for " + date);
+  }
+
+  private static void assertDelivered(Date[] range, Date oldStart, Date oldEnd, Date newStart,
+      Date newEnd) {
+    assertThat(range[0]).isEqualTo(oldStart);
+    assertThat(range[1]).isEqualTo(oldEnd);
+    assertThat(range[2]).isEqualTo(newStart);
+    assertThat(range[3]).isEqualTo(newEnd);
+  }
+
+  private static class RangeRecorder implements CalendarRangePickerView.OnRangeSelectedListener {
+    private final List<Date[]> delivered;
+
+    RangeRecorder(List<Date[]> delivered) {
+      this.delivered = delivered;
+    }
+
+    @Override public void onRangeSelected(Date oldStart, Date oldEnd, Date newStart, Date newEnd) {
+      delivered.add(new Date[] { oldStart, oldEnd, newStart, newEnd });
+    }
+  }
+
+  private static CalendarCellView cellView(MonthView monthView, MonthCellDescriptor cell) {
+    return (CalendarCellView) monthView.findViewWithTag(cell);
+  }
+
+  private static Date date(int year, int month, int dayOfMonth) {
+    final Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(year, month, dayOfMonth);
+    return cal.getTime();
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.app.Activity;
+import android.view.MotionEvent;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.squareup.timessquare.CalendarWeekStripView.CURRENT;
+import static com.squareup.timessquare.CalendarWeekStripView.NEXT;
+import static com.squareup.timessquare.CalendarWeekStripView.PREVIOUS;
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class CalendarWeekStripViewTest {
+  private static final int WIDTH = 700;
+
+  private CalendarWeekStripView view;
+  private Date wednesday;
+  private int sunday;
+
+  @Before
+  public void setUp() throws Exception {
+    view = new CalendarWeekStripView(new Activity(), null);
+    view.setFirstDayOfWeek(SUNDAY);
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(2012, NOVEMBER, 21);
+    wednesday = cal.getTime();
+    view.init(wednesday);
+    sunday = EpochDays.of(wednesday, TimeZone.getDefault()) - 3;
+    view.layout(0, 0, WIDTH, WIDTH / 7);
+    view.scrollTo(WIDTH, 0);
+  }
+
+  @Test
+  public void testTouchDownMidSettleFinishesTheSettle() throws Exception {
+    view.settleTo(NEXT);
+    MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 10, 10, 0);
+    // The strip takes the gesture rather than letting a cell see a tap.
+    assertThat(view.onInterceptTouchEvent(down)).isTrue();
+    assertThat(view.getScrollX()).isEqualTo(WIDTH);
+    assertThat(firstDayOf(CURRENT)).isEqualTo(sunday + 7);
+    assertThat(firstDayOf(NEXT)).isEqualTo(sunday + 14);
+  }
+
+  @Test
+  public void testPagesAreRecycled() throws Exception {
+    final CalendarRowView previous = view.rows[PREVIOUS];
+    final CalendarRowView current = view.rows[CURRENT];
+    final CalendarRowView next = view.rows[NEXT];
+    page(NEXT);
+    assertThat(view.getChildCount()).isEqualTo(3);
+    assertThat(view.rows[PREVIOUS]).isSameAs(current);
+    assertThat(view.rows[CURRENT]).isSameAs(next);
+    assertThat(view.rows[NEXT]).isSameAs(previous);
+    assertThat(firstDayOf(NEXT)).isEqualTo(sunday + 14);
+
+    page(PREVIOUS);
+    assertThat(view.rows[PREVIOUS]).isSameAs(previous);
+    assertThat(view.rows[CURRENT]).isSameAs(current);
+    assertThat(view.rows[NEXT]).isSameAs(next);
+    assertThat(firstDayOf(PREVIOUS)).isEqualTo(sunday - 7);
+  }
+
+  @Test
+  public void testScrollsIndefinitelyInBothDirections() throws Exception {
+    for (int i = 0; i < 60; i++) {
+      page(NEXT);
+    }
+    assertThat(firstDayOf(CURRENT)).isEqualTo(sunday + 60 * 7);
+    for (int i = 0; i < 120; i++) {
+      page(PREVIOUS);
+    }
+    assertThat(firstDayOf(CURRENT)).isEqualTo(sunday - 60 * 7);
+    assertThat(firstDayOf(PREVIOUS)).isEqualTo(sunday - 61 * 7);
+    assertThat(firstDayOf(NEXT)).isEqualTo(sunday - 59 * 7);
+    assertThat(view.getScrollX()).isEqualTo(WIDTH);
+    // The selection is kept while its week is off screen.
+    assertThat(view.getSelectedDate()).isEqualTo(wednesday);
+  }
+
+  /** Settles to {@code page}, then finishes the settle with a touch. */
+  private void page(int page) {
+    view.settleTo(page);
+    view.onInterceptTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 10, 10, 0));
+  }
+
+  private int firstDayOf(int page) {
+    return ((MonthCellDescriptor) view.rows[page].getChildAt(0).getTag()).getEpochDay();
+  }
+}
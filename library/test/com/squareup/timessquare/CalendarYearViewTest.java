@@ -0,0 +1,149 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.app.Activity;
+import android.content.res.Resources;
+import android.view.MotionEvent;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static java.util.Calendar.AUGUST;
+import static java.util.Calendar.DECEMBER;
+import static java.util.Calendar.FEBRUARY;
+import static java.util.Calendar.JANUARY;
+import static java.util.Calendar.JUNE;
+import static java.util.Calendar.MARCH;
+import static java.util.Calendar.SEPTEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class CalendarYearViewTest {
+  /** Three months across and four down, each 100 pixels square. */
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 400;
+
+  private CalendarYearView view;
+  private TimeZone timeZone;
+  private final List<int[]> clicks = new ArrayList<int[]>();
+
+  @Before
+  public void setUp() throws Exception {
+    view = new CalendarYearView(new Activity(), null);
+    timeZone = TimeZone.getDefault();
+    view.today.setTime(date(2013, JUNE, 15));
+    view.init(2013, date(2013, MARCH, 10), date(2013, SEPTEMBER, 1), timeZone, SUNDAY);
+    view.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+    view.setListener(new CalendarYearView.Listener() {
+      @Override public void onMonthClicked(int year, int month) {
+        clicks.add(new int[] { year, month });
+      }
+    });
+  }
+
+  @Test
+  public void testMonthAtFindsTheMonthUnderAPoint() throws Exception {
+    assertThat(view.monthAt(0, 0)).isEqualTo(0);
+    assertThat(view.monthAt(99, 99)).isEqualTo(0);
+    assertThat(view.monthAt(100, 0)).isEqualTo(1);
+    assertThat(view.monthAt(150, 250)).isEqualTo(7);
+    assertThat(view.monthAt(299, 399)).isEqualTo(11);
+
+    assertThat(view.monthAt(-1, 50)).isEqualTo(-1);
+    assertThat(view.monthAt(50, -1)).isEqualTo(-1);
+    assertThat(view.monthAt(WIDTH, 50)).isEqualTo(-1);
+    assertThat(view.monthAt(50, HEIGHT)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testDownAndUpOnAMonthClicksIt() throws Exception {
+    touch(MotionEvent.ACTION_DOWN, 150, 250);
+    touch(MotionEvent.ACTION_UP, 160, 260);
+    assertThat(clicks).hasSize(1);
+    assertThat(clicks.get(0)[0]).isEqualTo(2013);
+    assertThat(clicks.get(0)[1]).isEqualTo(AUGUST);
+  }
+
+  @Test
+  public void testUpOnAnotherMonthIsNoClick() throws Exception {
+    touch(MotionEvent.ACTION_DOWN, 50, 50);
+    touch(MotionEvent.ACTION_UP, 150, 50);
+    assertThat(clicks).isEmpty();
+  }
+
+  @Test
+  public void testCancelledGestureIsDropped() throws Exception {
+    touch(MotionEvent.ACTION_DOWN, 50, 50);
+    touch(MotionEvent.ACTION_CANCEL, 50, 50);
+    touch(MotionEvent.ACTION_UP, 50, 50);
+    assertThat(clicks).isEmpty();
+
+    // The next full gesture still clicks.
+    touch(MotionEvent.ACTION_DOWN, 50, 50);
+    touch(MotionEvent.ACTION_UP, 50, 50);
+    assertThat(clicks).hasSize(1);
+    assertThat(clicks.get(0)[1]).isEqualTo(JANUARY);
+  }
+
+  @Test
+  public void testTouchesAreIgnoredUntilInitialized() throws Exception {
+    CalendarYearView uninitialized = new CalendarYearView(new Activity(), null);
+    MotionEvent event = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 50, 50, 0);
+    assertThat(uninitialized.onTouchEvent(event)).isFalse();
+    event.recycle();
+  }
+
+  @Test
+  public void testDaysAreGreyedOutsideMinAndMax() throws Exception {
+    Resources res = view.getResources();
+    int active = res.getColor(R.color.calendar_text_active);
+    int unselectable = res.getColor(R.color.calendar_text_unselectable);
+    int today = res.getColor(R.color.calendar_selected_day_bg);
+
+    assertThat(view.dayColor(day(2013, JANUARY, 1))).isEqualTo(unselectable);
+    assertThat(view.dayColor(day(2013, MARCH, 9))).isEqualTo(unselectable);
+    assertThat(view.dayColor(day(2013, MARCH, 10))).isEqualTo(active);
+    assertThat(view.dayColor(day(2013, AUGUST, 31))).isEqualTo(active);
+    // The max date is exclusive.
+    assertThat(view.dayColor(day(2013, SEPTEMBER, 1))).isEqualTo(unselectable);
+    assertThat(view.dayColor(day(2013, DECEMBER, 31))).isEqualTo(unselectable);
+
+    assertThat(view.dayColor(day(2013, JUNE, 15))).isEqualTo(today);
+    assertThat(view.dayColor(day(2013, JUNE, 16))).isEqualTo(active);
+  }
+
+  @Test
+  public void testTodayOutsideMinAndMaxIsStillToday() throws Exception {
+    Resources res = view.getResources();
+    view.today.setTime(date(2013, FEBRUARY, 1));
+    view.init(2013, date(2013, MARCH, 10), date(2013, SEPTEMBER, 1), timeZone, SUNDAY);
+    assertThat(view.dayColor(day(2013, FEBRUARY, 1)))
+        .isEqualTo(res.getColor(R.color.calendar_selected_day_bg));
+    assertThat(view.dayColor(day(2013, JUNE, 15)))
+        .isEqualTo(res.getColor(R.color.calendar_text_active));
+  }
+
+  private void touch(int action, float x, float y) {
+    MotionEvent event = MotionEvent.obtain(0, 0, action, x, y, 0);
+    assertThat(view.onTouchEvent(event)).isTrue();
+    event.recycle();
+  }
+
+  private int day(int year, int month, int dayOfMonth) {
+    return EpochDays.of(date(year, month, dayOfMonth), timeZone);
+  }
+
+  private static Date date(int year, int month, int dayOfMonth) {
+    Calendar cal = Calendar.getInstance();
+    cal.clear();
+    cal.set(year, month, dayOfMonth);
+    return cal.getTime();
+  }
+}
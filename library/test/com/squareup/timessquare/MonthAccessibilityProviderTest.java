@@ -0,0 +1,211 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.app.Activity;
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.accessibility.AccessibilityNodeInfo;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static android.view.View.MeasureSpec.EXACTLY;
+import static android.view.View.MeasureSpec.UNSPECIFIED;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static java.util.Calendar.DAY_OF_MONTH;
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class MonthAccessibilityProviderTest {
+  /** November 2012 starts on a Thursday, the fifth column of a week starting on Sunday. */
+  private static final int NOVEMBER_1ST = 4;
+  /** The picker's first selectable day. */
+  private static final int NOVEMBER_16TH = NOVEMBER_1ST + 15;
+
+  private int sdkInt;
+  private CalendarPickerView view;
+  private MonthView monthView;
+  private MonthAccessibilityProvider provider;
+
+  @Before
+  public void setUp() throws Exception {
+    sdkInt = Build.VERSION.SDK_INT;
+    setSdkInt(Build.VERSION_CODES.JELLY_BEAN);
+
+    view = new CalendarPickerView(new Activity(), null);
+    Calendar cal = Calendar.getInstance();
+    cal.set(2012, NOVEMBER, 16, 0, 0);
+    Date minDate = cal.getTime();
+    view.today.setTime(minDate);
+    cal.set(2013, NOVEMBER, 16, 0, 0);
+    view.setFirstDayOfWeek(SUNDAY);
+    view.init(minDate, minDate, cal.getTime());
+
+    monthView = (MonthView) view.getAdapter().getView(0, null, view);
+    monthView.measure(makeMeasureSpec(700, EXACTLY), makeMeasureSpec(0, UNSPECIFIED));
+    monthView.layout(0, 0, monthView.getMeasuredWidth(), monthView.getMeasuredHeight());
+    provider = (MonthAccessibilityProvider) monthView.getAccessibilityNodeProvider();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    setSdkInt(sdkInt);
+  }
+
+  @Test
+  public void testVirtualIdsAreWeekTimesSevenPlusColumn() throws Exception {
+    List<List<MonthCellDescriptor>> cells = view.cells.get(0);
+    assertThat(monthView.getCellCount()).isEqualTo(cells.size() * 7);
+    for (int week = 0; week < cells.size(); week++) {
+      for (int column = 0; column < 7; column++) {
+        assertThat(monthView.getCell(week * 7 + column)).isSameAs(cells.get(week).get(column));
+      }
+    }
+    assertThat(monthView.getCell(NOVEMBER_1ST).getValue()).isEqualTo(1);
+    assertThat(monthView.getCell(NOVEMBER_1ST).isCurrentMonth()).isTrue();
+  }
+
+  @Test
+  public void testCellBoundsFollowTheRows() throws Exception {
+    Rect bounds = new Rect();
+    Rect previous = new Rect();
+    for (int id = 0, count = monthView.getCellCount(); id < count; id++) {
+      monthView.getCellBounds(id, bounds);
+      assertThat(bounds.width()).isGreaterThan(0);
+      assertThat(bounds.height()).isGreaterThan(0);
+      if (id % 7 == 0) {
+        if (id > 0) {
+          // A week starts below the previous one, at the left edge.
+          assertThat(bounds.top).isGreaterThanOrEqualTo(previous.bottom);
+        }
+      } else {
+        // A day is right of the previous one in the same week.
+        assertThat(bounds.top).isEqualTo(previous.top);
+        assertThat(bounds.left).isEqualTo(previous.right);
+      }
+      // Hit testing the middle of a day's bounds finds the day again.
+      assertThat(monthView.cellIndexAt(bounds.centerX(), bounds.centerY())).isEqualTo(id);
+      previous.set(bounds);
+    }
+  }
+
+  @Test
+  public void testDescriptionsAreCachedUntilRebound() throws Exception {
+    CountingDateFormat format = new CountingDateFormat("yyyy-MM-dd");
+    monthView.setAccessibilityDateFormat(format);
+    MonthCellDescriptor cell = monthView.getCell(NOVEMBER_16TH);
+    assertThat(provider.describe(NOVEMBER_16TH, cell)).isEqualTo("2012-11-16");
+    assertThat(provider.describe(NOVEMBER_16TH, cell)).isEqualTo("2012-11-16");
+    assertThat(format.formatted).isEqualTo(1);
+
+    // Rebinding the month, even to the same month, forgets what was formatted.
+    monthView.init(view.months.get(0), view.cells.get(0));
+    assertThat(provider.describe(NOVEMBER_16TH, monthView.getCell(NOVEMBER_16TH)))
+        .isEqualTo("2012-11-16");
+    assertThat(format.formatted).isEqualTo(2);
+  }
+
+  @Test
+  public void testNewDateFormatClearsTheDescriptions() throws Exception {
+    monthView.setAccessibilityDateFormat(new CountingDateFormat("yyyy-MM-dd"));
+    MonthCellDescriptor cell = monthView.getCell(NOVEMBER_16TH);
+    assertThat(provider.describe(NOVEMBER_16TH, cell)).isEqualTo("2012-11-16");
+
+    CountingDateFormat format = new CountingDateFormat("d MMM yyyy");
+    monthView.setAccessibilityDateFormat(format);
+    assertThat(provider.describe(NOVEMBER_16TH, cell)).isEqualTo("16 Nov 2012");
+    assertThat(format.formatted).isEqualTo(1);
+  }
+
+  @Test
+  public void testClickSelectsTheDay() throws Exception {
+    final int november20th = NOVEMBER_1ST + 19;
+    assertThat(provider.performAction(november20th, AccessibilityNodeInfo.ACTION_CLICK, null))
+        .isTrue();
+    Calendar selected = Calendar.getInstance();
+    selected.setTime(view.getSelectedDate());
+    assertThat(selected.get(DAY_OF_MONTH)).isEqualTo(20);
+    assertThat(monthView.getCell(november20th).isSelected()).isTrue();
+  }
+
+  @Test
+  public void testClickOnAnUnselectableDayIsRefused() throws Exception {
+    final int november10th = NOVEMBER_1ST + 9;
+    assertThat(monthView.getCell(november10th).isSelectable()).isFalse();
+    assertThat(provider.performAction(november10th, AccessibilityNodeInfo.ACTION_CLICK, null))
+        .isFalse();
+    Calendar selected = Calendar.getInstance();
+    selected.setTime(view.getSelectedDate());
+    assertThat(selected.get(DAY_OF_MONTH)).isEqualTo(16);
+
+    // Nor are ids past the month's weeks.
+    assertThat(provider.performAction(monthView.getCellCount(),
+        AccessibilityNodeInfo.ACTION_CLICK, null)).isFalse();
+  }
+
+  @Test
+  public void testAccessibilityFocusIsSetAndCleared() throws Exception {
+    final int focus = AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS;
+    final int clear = AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS;
+    assertThat(provider.performAction(NOVEMBER_16TH, focus, null)).isTrue();
+    assertThat(provider.performAction(NOVEMBER_16TH, focus, null)).isFalse();
+    // Only the focused day can clear focus.
+    assertThat(provider.performAction(NOVEMBER_1ST, clear, null)).isFalse();
+    assertThat(provider.performAction(NOVEMBER_16TH, clear, null)).isTrue();
+    assertThat(provider.performAction(NOVEMBER_16TH, clear, null)).isFalse();
+
+    // Moving focus to another day, then rebinding, leaves nothing focused.
+    assertThat(provider.performAction(NOVEMBER_16TH, focus, null)).isTrue();
+    assertThat(provider.performAction(NOVEMBER_1ST, focus, null)).isTrue();
+    assertThat(provider.performAction(NOVEMBER_16TH, clear, null)).isFalse();
+    monthView.init(view.months.get(0), view.cells.get(0));
+    assertThat(provider.performAction(NOVEMBER_1ST, clear, null)).isFalse();
+  }
+
+  @Test
+  public void testProviderIsCreatedOnceFromJellyBean() throws Exception {
+    assertThat(provider).isNotNull();
+    assertThat(monthView.getAccessibilityNodeProvider()).isSameAs(provider);
+  }
+
+  @Test
+  public void testNoProviderBelowJellyBean() throws Exception {
+    setSdkInt(Build.VERSION_CODES.JELLY_BEAN - 1);
+    MonthView oldMonthView = (MonthView) view.getAdapter().getView(1, null, view);
+    assertThat(oldMonthView.getAccessibilityNodeProvider() instanceof MonthAccessibilityProvider)
+        .isFalse();
+  }
+
+  private static void setSdkInt(int sdkInt) throws Exception {
+    Field field = Build.VERSION.class.getField("SDK_INT");
+    Field modifiers = Field.class.getDeclaredField("modifiers");
+    modifiers.setAccessible(true);
+    modifiers.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+    field.setInt(null, sdkInt);
+  }
+
+  private static class CountingDateFormat extends SimpleDateFormat {
+    int formatted;
+
+    CountingDateFormat(String pattern) {
+      super(pattern, Locale.US);
+    }
+
+    @Override public StringBuffer format(Date date, StringBuffer buffer, FieldPosition position) {
+      formatted++;
+      return super.format(date, buffer, position);
+    }
+  }
+}
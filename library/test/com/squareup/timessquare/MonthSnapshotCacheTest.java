@@ -0,0 +1,107 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import android.graphics.Bitmap;
+import com.xtremelabs.robolectric.RobolectricTestRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class MonthSnapshotCacheTest {
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 10;
+  /** Bytes of one WIDTH x HEIGHT snapshot. */
+  private static final long SNAPSHOT_BYTES = WIDTH * HEIGHT * 4;
+
+  private MonthSnapshotCache cache;
+  private int[] versions;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new MonthSnapshotCache(3 * SNAPSHOT_BYTES);
+    versions = new int[4];
+    cache.setVersions(versions);
+  }
+
+  @Test
+  public void testSnapshotIsReturnedAtItsVersionAndSize() throws Exception {
+    Bitmap bitmap = snapshot(1);
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isSameAs(bitmap);
+    assertThat(cache.get(0, WIDTH, HEIGHT)).isNull();
+  }
+
+  @Test
+  public void testVersionBumpInvalidatesTheSnapshot() throws Exception {
+    snapshot(1);
+    snapshot(2);
+    versions[1]++;
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isNull();
+    assertThat(cache.get(2, WIDTH, HEIGHT)).isNotNull();
+  }
+
+  @Test
+  public void testSizeChangeInvalidatesTheSnapshot() throws Exception {
+    snapshot(1);
+    assertThat(cache.get(1, WIDTH + 1, HEIGHT)).isNull();
+    // The stale snapshot was dropped, not kept for the old size.
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isNull();
+  }
+
+  @Test
+  public void testNewVersionsDropEverySnapshot() throws Exception {
+    snapshot(1);
+    cache.setVersions(new int[4]);
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isNull();
+  }
+
+  @Test
+  public void testTrimEvictsLeastRecentlyUsedFirst() throws Exception {
+    snapshot(0);
+    snapshot(1);
+    snapshot(2);
+    // Drawing month 0 again makes month 1 the least recently used.
+    assertThat(cache.get(0, WIDTH, HEIGHT)).isNotNull();
+
+    // A fourth snapshot doesn't fit the budget of three.
+    snapshot(3);
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isNull();
+    assertThat(cache.get(0, WIDTH, HEIGHT)).isNotNull();
+    assertThat(cache.get(2, WIDTH, HEIGHT)).isNotNull();
+    assertThat(cache.get(3, WIDTH, HEIGHT)).isNotNull();
+  }
+
+  @Test
+  public void testTrimEvictsOnlyWhatTheNewBitmapNeeds() throws Exception {
+    snapshot(0);
+    snapshot(1);
+    // A snapshot twice the size needs one of the two older ones evicted to fit the budget.
+    assertThat(cache.newBitmap(WIDTH, 2 * HEIGHT)).isNotNull();
+    assertThat(cache.get(0, WIDTH, HEIGHT)).isNull();
+    assertThat(cache.get(1, WIDTH, HEIGHT)).isNotNull();
+  }
+
+  @Test
+  public void testNewBitmapOverBudgetIsNull() throws Exception {
+    snapshot(0);
+    assertThat(cache.newBitmap(WIDTH, 4 * HEIGHT)).isNull();
+    assertThat(cache.newBitmap(0, HEIGHT)).isNull();
+    // Nothing was evicted for a bitmap that was never created.
+    assertThat(cache.get(0, WIDTH, HEIGHT)).isNotNull();
+  }
+
+  @Test
+  public void testPositionsWithoutAVersionAreNotStored() throws Exception {
+    cache.put(versions.length, cache.newBitmap(WIDTH, HEIGHT));
+    assertThat(cache.get(versions.length, WIDTH, HEIGHT)).isNull();
+  }
+
+  private Bitmap snapshot(int position) {
+    Bitmap bitmap = cache.newBitmap(WIDTH, HEIGHT);
+    assertThat(bitmap).isNotNull();
+    cache.put(position, bitmap);
+    return bitmap;
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+/**
+ * The colors the library's stock cell selectors give each kind of cell, as ARGB.  Mirrors
+ * {@code calendar_bg_selector}, {@code calendar_text_selector} and {@code colors.xml}, so rendered
+ * months match the app's.  A cell's kind is a small index, so renderers can precompute whatever
+ * they draw or write per kind.
+ */
+final class CellPalette {
+  static final int CALENDAR_BG = 0xffffffff;
+  static final int DIVIDER = 0xffbababa;
+  static final int TITLE_TEXT = 0xff778088;
+
+  private static final int ACTIVE_MONTH_BG = 0xfff5f7f9;
+  private static final int INACTIVE_MONTH_BG = 0xffd7d9db;
+  private static final int SELECTED_DAY_BG = 0xff379bff;
+  private static final int TEXT_ACTIVE = 0xff778088;
+  private static final int TEXT_SELECTED = 0xffffffff;
+  private static final int TEXT_UNSELECTABLE = 0x7f778088;
+
+  private static final int CURRENT_MONTH = 1;
+  private static final int SELECTABLE = 2;
+  private static final int SELECTED = 4;
+  private static final int TODAY = 8;
+
+  /** Number of kinds: every index returned by {@link #kindOf} is below this. */
+  static final int KIND_COUNT = 16;
+
+  private CellPalette() {
+  }
+
+  static int kindOf(MonthCellDescriptor cell) {
+    int kind = 0;
+    if (cell.isCurrentMonth()) {
+      kind |= CURRENT_MONTH;
+    }
+    if (cell.isSelectable()) {
+      kind |= SELECTABLE;
+    }
+    if (cell.isSelected()) {
+      kind |= SELECTED;
+    }
+    if (cell.isToday()) {
+      kind |= TODAY;
+    }
+    return kind;
+  }
+
+  static boolean isCurrentMonth(int kind) {
+    return (kind & CURRENT_MONTH) != 0;
+  }
+
+  static boolean isSelectable(int kind) {
+    return (kind & SELECTABLE) != 0;
+  }
+
+  static boolean isSelected(int kind) {
+    return (kind & SELECTED) != 0;
+  }
+
+  static boolean isToday(int kind) {
+    return (kind & TODAY) != 0;
+  }
+
+  /** Background of cells of {@code kind}, in the order {@code calendar_bg_selector} checks. */
+  static int background(int kind) {
+    if (isSelected(kind)) {
+      return SELECTED_DAY_BG;
+    } else if (!isCurrentMonth(kind)) {
+      return INACTIVE_MONTH_BG;
+    } else if (isToday(kind)) {
+      return TEXT_ACTIVE;
+    }
+    return ACTIVE_MONTH_BG;
+  }
+
+  /**
+   * Text color of cells of {@code kind}.  Unselectable cells get a flat color rather than the
+   * selector, as in {@code MonthView}.
+   */
+  static int text(int kind) {
+    if (!isSelectable(kind)) {
+      return TEXT_UNSELECTABLE;
+    } else if (isSelected(kind)) {
+      return TEXT_SELECTED;
+    } else if (isToday(kind)) {
+      return ACTIVE_MONTH_BG;
+    }
+    return TEXT_ACTIVE;
+  }
+}
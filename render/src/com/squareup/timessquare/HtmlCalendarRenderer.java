@@ -0,0 +1,151 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders the months of a {@link CalendarCells} as HTML tables, colored like the library's stock
+ * cells.  Styles are inline so the tables survive email clients that drop style sheets.  Every
+ * cell also carries classes, {@code other-month}, {@code unselectable}, {@code selected},
+ * {@code today} and {@code range-first}, {@code range-middle}, {@code range-last} or
+ * {@code range-single}, for pages that style them further.
+ * <p>
+ * Output is appended as it's produced, so any number of months can be streamed to a writer.
+ * Everything but the cells themselves is formatted once, up front.  Immutable and safe to share
+ * between threads.
+ */
+public final class HtmlCalendarRenderer {
+  private static final String[] DAY_NUMBERS = new String[32];
+  static {
+    for (int i = 0; i < DAY_NUMBERS.length; i++) {
+      DAY_NUMBERS[i] = Integer.toString(i);
+    }
+  }
+
+  private final CalendarCells calendarCells;
+  private final String header;
+  /** Opening {@code td} tag for each {@link CellPalette} kind and {@link RangeState}. */
+  private final String[][] cellTags =
+      new String[CellPalette.KIND_COUNT][RangeState.values().length];
+
+  /**
+   * @param calendarCells Cells of the months to render.
+   * @param weekdayNameFormat Formats the day of the week headers.  Only used in this constructor.
+   */
+  public HtmlCalendarRenderer(CalendarCells calendarCells, DateFormat weekdayNameFormat) {
+    if (calendarCells == null || weekdayNameFormat == null) {
+      throw new IllegalArgumentException("Cells and format must be non-null");
+    }
+    this.calendarCells = calendarCells;
+
+    final WeekLayout weekLayout =
+        new WeekLayout(calendarCells.getModel().getFirstDayOfWeek(), weekdayNameFormat);
+    final StringBuilder header = new StringBuilder("<tr>");
+    for (int c = 0; c < 7; c++) {
+      header.append("<th style=\"color:").append(css(CellPalette.TITLE_TEXT))
+          .append(";font-weight:normal\">")
+          .append(escape(weekLayout.getHeaderLabel(c))).append("</th>");
+    }
+    this.header = header.append("</tr>\n").toString();
+
+    for (int kind = 0; kind < CellPalette.KIND_COUNT; kind++) {
+      for (RangeState rangeState : RangeState.values()) {
+        cellTags[kind][rangeState.ordinal()] = cellTag(kind, rangeState);
+      }
+    }
+  }
+
+  /**
+   * Appends the month at {@code index} in the model to {@code out}.  Time of day is ignored.
+   *
+   * @param selectedStartDate Earliest selected date, inclusive, or null for no selection.
+   * @param selectedEndDate Latest selected date, inclusive, or null to select only the start date.
+   */
+  public void render(int index, Date selectedStartDate, Date selectedEndDate, Appendable out)
+      throws IOException {
+    final List<List<MonthCellDescriptor>> weeks =
+        calendarCells.build(index, selectedStartDate, selectedEndDate);
+    out.append("<table class=\"calendar-month\" cellspacing=\"1\" style=\"background:")
+        .append(css(CellPalette.DIVIDER)).append(";text-align:center\">\n<caption style=\"color:")
+        .append(css(CellPalette.TITLE_TEXT)).append(";font-weight:bold\">")
+        .append(escape(calendarCells.getModel().getLabel(index))).append("</caption>\n")
+        .append(header);
+    for (List<MonthCellDescriptor> week : weeks) {
+      out.append("<tr>");
+      for (MonthCellDescriptor cell : week) {
+        out.append(cellTags[CellPalette.kindOf(cell)][cell.getRangeState().ordinal()])
+            .append(DAY_NUMBERS[cell.getValue()]).append("</td>");
+      }
+      out.append("</tr>\n");
+    }
+    out.append("</table>\n");
+  }
+
+  /** Appends every month in the model to {@code out}, in order. */
+  public void renderAll(Date selectedStartDate, Date selectedEndDate, Appendable out)
+      throws IOException {
+    for (int i = 0, count = calendarCells.getModel().getMonthCount(); i < count; i++) {
+      render(i, selectedStartDate, selectedEndDate, out);
+    }
+  }
+
+  private static String cellTag(int kind, RangeState rangeState) {
+    final StringBuilder tag = new StringBuilder("<td class=\"day");
+    if (!CellPalette.isCurrentMonth(kind)) {
+      tag.append(" other-month");
+    } else if (!CellPalette.isSelectable(kind)) {
+      tag.append(" unselectable");
+    }
+    if (CellPalette.isSelected(kind)) {
+      tag.append(" selected");
+    }
+    if (CellPalette.isToday(kind)) {
+      tag.append(" today");
+    }
+    if (rangeState != RangeState.NONE) {
+      tag.append(" range-").append(rangeState.name().toLowerCase(Locale.US));
+    }
+    return tag.append("\" style=\"background:").append(css(CellPalette.background(kind)))
+        .append(";color:").append(css(CellPalette.text(kind))).append("\">").toString();
+  }
+
+  /** Returns {@code argb} as a CSS color. */
+  static String css(int argb) {
+    final int alpha = argb >>> 24;
+    if (alpha == 0xff) {
+      return String.format(Locale.US, "#%06x", argb & 0xffffff);
+    }
+    return String.format(Locale.US, "rgba(%d,%d,%d,%.2f)", (argb >> 16) & 0xff,
+        (argb >> 8) & 0xff, argb & 0xff, alpha / 255f);
+  }
+
+  private static String escape(String text) {
+    final StringBuilder escaped = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      switch (c) {
+        case '<':
+          escaped.append("&lt;");
+          break;
+        case '>':
+          escaped.append("&gt;");
+          break;
+        case '&':
+          escaped.append("&amp;");
+          break;
+        case '"':
+          escaped.append("&quot;");
+          break;
+        default:
+          escaped.append(c);
+          break;
+      }
+    }
+    return escaped.toString();
+  }
+}
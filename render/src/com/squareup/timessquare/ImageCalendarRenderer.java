@@ -0,0 +1,185 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws the months of a {@link CalendarCells} with {@code java.awt}, laid out and colored like
+ * the library's stock {@code MonthView}: a title, a row of day of the week headers, and a week per
+ * row with one-pixel dividers.  On a server, run with {@code -Djava.awt.headless=true}.
+ * <p>
+ * Built for rendering many months in a row: fonts, metrics, colors and header labels are set up
+ * once, and the image for each possible number of weeks is allocated once and drawn over for
+ * every month with that many.  So a renderer isn't safe to share between threads; use one per
+ * thread.
+ */
+public final class ImageCalendarRenderer {
+  private static final String[] DAY_NUMBERS = new String[32];
+  static {
+    for (int i = 0; i < DAY_NUMBERS.length; i++) {
+      DAY_NUMBERS[i] = Integer.toString(i);
+    }
+  }
+
+  private final CalendarCells calendarCells;
+  private final int cellSize;
+  private final int titleHeight;
+  private final int headerHeight;
+  private final int width;
+  private final String[] headerLabels = new String[7];
+  private final Font titleFont;
+  private final Font headerFont;
+  private final Font dayFont;
+  private final Color[] backgrounds = new Color[CellPalette.KIND_COUNT];
+  private final Color[] texts = new Color[CellPalette.KIND_COUNT];
+  private final Color calendarBg = new Color(CellPalette.CALENDAR_BG, true);
+  private final Color divider = new Color(CellPalette.DIVIDER, true);
+  private final Color titleText = new Color(CellPalette.TITLE_TEXT, true);
+  /** Image for months of each number of weeks, 4 through 6, allocated on first use. */
+  private final BufferedImage[] images = new BufferedImage[7];
+  private FontMetrics titleMetrics;
+  private FontMetrics headerMetrics;
+  private FontMetrics dayMetrics;
+  private int[] dayWidths;
+
+  /**
+   * @param calendarCells Cells of the months to render.
+   * @param weekdayNameFormat Formats the day of the week headers.  Only used in this constructor.
+   * @param cellSize Width and height of a day, in pixels.
+   */
+  public ImageCalendarRenderer(CalendarCells calendarCells, DateFormat weekdayNameFormat,
+      int cellSize) {
+    if (calendarCells == null || weekdayNameFormat == null) {
+      throw new IllegalArgumentException("Cells and format must be non-null");
+    }
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+    }
+    this.calendarCells = calendarCells;
+    this.cellSize = cellSize;
+    // The month layout's 18sp title and days and 14sp headers, scaled to the cell.
+    titleHeight = cellSize;
+    headerHeight = cellSize * 2 / 3;
+    width = 7 * cellSize + 8;
+    titleFont = new Font(Font.SANS_SERIF, Font.BOLD, cellSize * 2 / 5);
+    dayFont = titleFont;
+    headerFont = new Font(Font.SANS_SERIF, Font.PLAIN, cellSize * 4 / 15);
+
+    final WeekLayout weekLayout =
+        new WeekLayout(calendarCells.getModel().getFirstDayOfWeek(), weekdayNameFormat);
+    for (int c = 0; c < 7; c++) {
+      headerLabels[c] = weekLayout.getHeaderLabel(c);
+    }
+    for (int kind = 0; kind < CellPalette.KIND_COUNT; kind++) {
+      backgrounds[kind] = new Color(CellPalette.background(kind), true);
+      texts[kind] = new Color(CellPalette.text(kind), true);
+    }
+  }
+
+  /**
+   * Draws the month at {@code index} in the model.  Time of day is ignored.  The image is reused
+   * by later calls for months with as many weeks, so copy or write it out before the next call.
+   *
+   * @param selectedStartDate Earliest selected date, inclusive, or null for no selection.
+   * @param selectedEndDate Latest selected date, inclusive, or null to select only the start date.
+   */
+  public BufferedImage render(int index, Date selectedStartDate, Date selectedEndDate) {
+    final List<List<MonthCellDescriptor>> weeks =
+        calendarCells.build(index, selectedStartDate, selectedEndDate);
+    final int numWeeks = weeks.size();
+    BufferedImage image = images[numWeeks];
+    if (image == null) {
+      image = new BufferedImage(width, heightFor(numWeeks), BufferedImage.TYPE_INT_ARGB);
+      images[numWeeks] = image;
+    }
+
+    final Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      if (dayMetrics == null) {
+        measure(g);
+      }
+      g.setColor(calendarBg);
+      g.fillRect(0, 0, image.getWidth(), image.getHeight());
+
+      final String title = calendarCells.getModel().getLabel(index);
+      g.setFont(titleFont);
+      g.setColor(titleText);
+      g.drawString(title, (width - titleMetrics.stringWidth(title)) / 2,
+          baseline(0, titleHeight, titleMetrics));
+
+      g.setFont(headerFont);
+      for (int c = 0; c < 7; c++) {
+        final String label = headerLabels[c];
+        g.drawString(label, cellLeft(c) + (cellSize - headerMetrics.stringWidth(label)) / 2,
+            baseline(titleHeight, headerHeight, headerMetrics));
+      }
+
+      // Dividers show through the one-pixel gaps between cells, as in CalendarGridView.
+      final int gridTop = titleHeight + headerHeight;
+      g.setColor(divider);
+      g.fillRect(0, gridTop, width, numWeeks * (cellSize + 1) + 1);
+      g.setFont(dayFont);
+      for (int w = 0; w < numWeeks; w++) {
+        final List<MonthCellDescriptor> week = weeks.get(w);
+        final int top = gridTop + 1 + w * (cellSize + 1);
+        for (int c = 0; c < 7; c++) {
+          final MonthCellDescriptor cell = week.get(c);
+          final int kind = CellPalette.kindOf(cell);
+          final int left = cellLeft(c);
+          g.setColor(backgrounds[kind]);
+          g.fillRect(left, top, cellSize, cellSize);
+          g.setColor(texts[kind]);
+          final int value = cell.getValue();
+          g.drawString(DAY_NUMBERS[value], left + (cellSize - dayWidths[value]) / 2,
+              baseline(top, cellSize, dayMetrics));
+        }
+      }
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /** Draws the month at {@code index} and writes it to {@code out} as a PNG. */
+  public void writePng(int index, Date selectedStartDate, Date selectedEndDate, OutputStream out)
+      throws IOException {
+    ImageIO.write(render(index, selectedStartDate, selectedEndDate), "png", out);
+  }
+
+  private void measure(Graphics2D g) {
+    titleMetrics = g.getFontMetrics(titleFont);
+    headerMetrics = g.getFontMetrics(headerFont);
+    dayMetrics = g.getFontMetrics(dayFont);
+    dayWidths = new int[DAY_NUMBERS.length];
+    for (int i = 0; i < DAY_NUMBERS.length; i++) {
+      dayWidths[i] = dayMetrics.stringWidth(DAY_NUMBERS[i]);
+    }
+  }
+
+  private int heightFor(int numWeeks) {
+    return titleHeight + headerHeight + numWeeks * (cellSize + 1) + 1;
+  }
+
+  /** Left edge of {@code column}, after the one-pixel divider to its left. */
+  private int cellLeft(int column) {
+    return 1 + column * (cellSize + 1);
+  }
+
+  /** Baseline that centers a line of text vertically in a box. */
+  private static int baseline(int top, int height, FontMetrics metrics) {
+    return top + (height - metrics.getHeight()) / 2 + metrics.getAscent();
+  }
+}
@@ -0,0 +1,60 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Calendar.DECEMBER;
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class HtmlCalendarRendererTest {
+  private final TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+  private HtmlCalendarRenderer renderer;
+
+  @Before
+  public void setUp() throws Exception {
+    CalendarModel model = CalendarModel.create(date(2012, NOVEMBER, 16),
+        date(2013, NOVEMBER, 16), timeZone, SUNDAY, new SimpleDateFormat("MMMM yyyy", Locale.US));
+    renderer = new HtmlCalendarRenderer(new CalendarCells(model, date(2012, NOVEMBER, 16)),
+        new SimpleDateFormat("EEE", Locale.US));
+  }
+
+  @Test
+  public void testRenderMonth() throws Exception {
+    StringBuilder html = new StringBuilder();
+    renderer.render(0, date(2012, NOVEMBER, 29), date(2012, DECEMBER, 2), html);
+    final String out = html.toString();
+    assertThat(out).startsWith("<table class=\"calendar-month\"");
+    assertThat(out).contains(">November 2012</caption>");
+    assertThat(out).contains(">Sun</th>");
+    // Header plus five weeks.
+    assertThat(out.split("<tr>")).hasSize(7);
+    assertThat(out).contains(
+        "<td class=\"day today\" style=\"background:#778088;color:#f5f7f9\">16<");
+    assertThat(out).contains("<td class=\"day selected range-first\"");
+    assertThat(out).contains("class=\"day unselectable\" style=\"background:#f5f7f9;"
+        + "color:rgba(119,128,136,0.50)\">15<");
+  }
+
+  @Test
+  public void testRenderAllStreamsEveryMonth() throws Exception {
+    StringBuilder html = new StringBuilder();
+    renderer.renderAll(null, null, html);
+    assertThat(html.toString().split("<table ")).hasSize(14);
+    assertThat(html.toString()).doesNotContain("selected");
+  }
+
+  private Date date(int year, int month, int day) {
+    final Calendar cal = Calendar.getInstance(timeZone);
+    cal.clear();
+    cal.set(year, month, day, 12, 0);
+    return cal.getTime();
+  }
+}
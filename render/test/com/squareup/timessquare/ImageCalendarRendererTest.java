@@ -0,0 +1,118 @@
+// Copyright 2012 Square, Inc.
+package com.squareup.timessquare;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import javax.imageio.ImageIO;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static java.util.Calendar.NOVEMBER;
+import static java.util.Calendar.SUNDAY;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ImageCalendarRendererTest {
+  private static final int CELL_SIZE = 30;
+  /** Title and header rows above the grid: a cell, and two thirds of a cell. */
+  private static final int GRID_TOP = CELL_SIZE + CELL_SIZE * 2 / 3;
+  private static final int WIDTH = 7 * CELL_SIZE + 8;
+
+  private static final int DIVIDER = 0xffbababa;
+  private static final int ACTIVE_MONTH_BG = 0xfff5f7f9;
+  private static final int INACTIVE_MONTH_BG = 0xffd7d9db;
+  private static final int SELECTED_DAY_BG = 0xff379bff;
+  private static final int TODAY_BG = 0xff778088;
+
+  private final TimeZone timeZone = TimeZone.getTimeZone("America/New_York");
+  private ImageCalendarRenderer renderer;
+
+  @BeforeClass
+  public static void setUpClass() throws Exception {
+    System.setProperty("java.awt.headless", "true");
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    // November 2012 and January 2013 span five weeks starting on Sunday, December 2012 six.
+    CalendarModel model = CalendarModel.create(date(2012, NOVEMBER, 16),
+        date(2013, NOVEMBER, 16), timeZone, SUNDAY, new SimpleDateFormat("MMMM yyyy", Locale.US));
+    renderer = new ImageCalendarRenderer(new CalendarCells(model, date(2012, NOVEMBER, 16)),
+        new SimpleDateFormat("EEE", Locale.US), CELL_SIZE);
+  }
+
+  @Test
+  public void testCellsAreFilledByKind() throws Exception {
+    BufferedImage image = renderer.render(0, date(2012, NOVEMBER, 20), null);
+    assertThat(image.getWidth()).isEqualTo(WIDTH);
+    assertThat(image.getHeight()).isEqualTo(heightFor(5));
+
+    // November 1st is a Thursday, so the month starts in the fifth column.
+    assertThat(cellColor(image, 0, 0)).isEqualTo(INACTIVE_MONTH_BG); // October 28th.
+    assertThat(cellColor(image, 2, 5)).isEqualTo(TODAY_BG); // November 16th.
+    assertThat(cellColor(image, 3, 2)).isEqualTo(SELECTED_DAY_BG); // November 20th.
+    assertThat(cellColor(image, 3, 3)).isEqualTo(ACTIVE_MONTH_BG); // November 21st.
+    // The dividers between cells.
+    assertThat(image.getRGB(0, GRID_TOP + 1)).isEqualTo(DIVIDER);
+    assertThat(image.getRGB(5, GRID_TOP)).isEqualTo(DIVIDER);
+  }
+
+  @Test
+  public void testWritePngDecodesAtTheRenderedSize() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    renderer.writePng(1, null, null, out);
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertThat(decoded).isNotNull();
+    assertThat(decoded.getWidth()).isEqualTo(WIDTH);
+    assertThat(decoded.getHeight()).isEqualTo(heightFor(6));
+    assertThat(cellColor(decoded, 0, 0)).isEqualTo(INACTIVE_MONTH_BG); // November 25th.
+    assertThat(cellColor(decoded, 5, 0)).isEqualTo(ACTIVE_MONTH_BG); // December 30th.
+  }
+
+  @Test
+  public void testRerenderingLeavesNoStaleRows() throws Exception {
+    BufferedImage november = renderer.render(0, date(2012, NOVEMBER, 20), null);
+    assertThat(cellColor(november, 3, 2)).isEqualTo(SELECTED_DAY_BG);
+
+    // A six week month gets its own image, and the five week one keeps its height.
+    BufferedImage december = renderer.render(1, null, null);
+    assertThat(december).isNotSameAs(november);
+    assertThat(december.getHeight()).isEqualTo(heightFor(6));
+    assertThat(cellColor(december, 5, 1)).isEqualTo(ACTIVE_MONTH_BG); // December 31st.
+
+    // January is drawn over November's image, with nothing of November left.
+    BufferedImage january = renderer.render(2, null, null);
+    assertThat(january).isSameAs(november);
+    assertThat(january.getHeight()).isEqualTo(heightFor(5));
+    assertThat(cellColor(january, 3, 2)).isEqualTo(ACTIVE_MONTH_BG); // January 22nd.
+    assertThat(cellColor(january, 4, 5)).isEqualTo(INACTIVE_MONTH_BG); // February 1st.
+    // Below the last week is only the grid's bottom divider.
+    for (int x = 0; x < WIDTH; x++) {
+      assertThat(january.getRGB(x, january.getHeight() - 1)).isEqualTo(DIVIDER);
+    }
+  }
+
+  /** Color of a corner of the cell at {@code week} and {@code column}, clear of its number. */
+  private static int cellColor(BufferedImage image, int week, int column) {
+    final int left = 1 + column * (CELL_SIZE + 1);
+    final int top = GRID_TOP + 1 + week * (CELL_SIZE + 1);
+    return image.getRGB(left + 1, top + 1);
+  }
+
+  private static int heightFor(int numWeeks) {
+    return GRID_TOP + numWeeks * (CELL_SIZE + 1) + 1;
+  }
+
+  private Date date(int year, int month, int day) {
+    final Calendar cal = Calendar.getInstance(timeZone);
+    cal.clear();
+    cal.set(year, month, day, 12, 0);
+    return cal.getTime();
+  }
+}